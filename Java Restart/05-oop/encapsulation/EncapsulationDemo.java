@@ -1,3 +1,6 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
 /**
  * Encapsulation:
  * - Binding data (fields) and methods into one unit (class).
@@ -9,14 +12,15 @@ public class EncapsulationDemo {
     static class BankAccount {
         // Private fields (hidden from outside classes)
         private String accountHolder;
-        private double balance;
+        // Kept in cents: a long never picks up double rounding errors, and addExact catches overflow
+        private long balanceCents;
         private String accountNumber;
 
         // Constructor
         BankAccount(String accountHolder, String accountNumber, double initialBalance) {
             this.accountHolder = accountHolder;
             this.accountNumber = accountNumber;
-            this.balance = initialBalance;
+            this.balanceCents = toCents(initialBalance);
         }
 
         // Public getter for account holder
@@ -34,14 +38,15 @@ public class EncapsulationDemo {
         }
 
         // Public getter for balance (read-only, no setter)
-        public double getBalance() {
-            return balance;
+        public BigDecimal getBalance() {
+            return BigDecimal.valueOf(balanceCents, 2);
         }
 
         // Method to deposit money
         public void deposit(double amount) {
-            if (amount > 0) {
-                balance += amount;
+            long cents = toCents(amount);
+            if (cents > 0) {
+                balanceCents = Math.addExact(balanceCents, cents);
                 System.out.println("Deposited $" + amount + " successfully.");
             } else {
                 System.out.println("Deposit amount must be positive!");
@@ -50,8 +55,9 @@ public class EncapsulationDemo {
 
         // Method to withdraw money (controlled access)
         public void withdraw(double amount) {
-            if (amount > 0 && amount <= balance) {
-                balance -= amount;
+            long cents = toCents(amount);
+            if (cents > 0 && cents <= balanceCents) {
+                balanceCents = Math.subtractExact(balanceCents, cents);
                 System.out.println("Withdrew $" + amount + " successfully.");
             } else {
                 System.out.println("Invalid withdrawal amount or insufficient balance!");
@@ -62,7 +68,12 @@ public class EncapsulationDemo {
         public void displayInfo() {
             System.out.println("Account Holder: " + accountHolder);
             System.out.println("Account Number: " + maskAccountNumber(accountNumber));
-            System.out.println("Current Balance: $" + balance);
+            System.out.println("Current Balance: $" + getBalance());
+        }
+
+        // Private helper: converts an amount to cents with banker's rounding (HALF_EVEN)
+        private static long toCents(double amount) {
+            return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
         }
 
         // Private helper method (not accessible outside)
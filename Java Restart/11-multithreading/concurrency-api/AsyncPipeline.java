@@ -0,0 +1,415 @@
+/**
+ * BOUNDED-PARALLELISM ASYNC PIPELINE (CompletableFuture)
+ * -------------------------------------------------------
+ * Firing one sendAsync() per input starts thousands of calls at once, and
+ * future.get() per input runs them one by one. AsyncPipeline sits in between:
+ *
+ * ✅ Stages – each input flows through a chain of async (CompletionStage) or
+ *   blocking (run on an Executor) calls
+ * ✅ Per-stage cap – at most maxInFlight calls of a stage run at a time; extra
+ *   calls wait in a queue, no thread is parked waiting for a permit
+ * ✅ Back-pressure – inputs are pulled from the Stream only while fewer than
+ *   window() elements are in flight or waiting to be delivered
+ * ✅ Ordered (default) or unordered() delivery to the sink
+ * ✅ Fail fast – the first failure completes the run exceptionally and cancels
+ *   every outstanding call; cancelling the run's future does the same
+ *
+ * Stage caps belong to the pipeline, so concurrent runs share them. The sink is
+ * called by one thread at a time.
+ */
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+public final class AsyncPipeline<I, O> {
+
+    /** ==========================================
+     *  1. AsyncLimiter – non-blocking permits
+     * ========================================== */
+    static final class AsyncLimiter {
+        final String name;
+        private final int permits;
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        private int active;
+        private int peak;
+        private long completed;
+        private boolean starting;
+
+        AsyncLimiter(String name, int permits) {
+            if (permits < 1) {
+                throw new IllegalArgumentException("maxInFlight must be positive: " + permits);
+            }
+            this.name = name;
+            this.permits = permits;
+        }
+
+        /** Starts the call when a permit is free; cancelling the result cancels the call. */
+        <R> CompletableFuture<R> submit(Supplier<? extends CompletionStage<R>> call) {
+            CompletableFuture<R> result = new CompletableFuture<>();
+            Runnable start = () -> {
+                if (result.isDone()) {          // cancelled while queued
+                    release();
+                    return;
+                }
+                CompletableFuture<R> running;
+                try {
+                    running = call.get().toCompletableFuture();
+                } catch (Throwable e) {
+                    release();
+                    result.completeExceptionally(e);
+                    return;
+                }
+                running.whenComplete((value, error) -> {
+                    release();
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+                result.whenComplete((value, error) -> {
+                    if (result.isCancelled()) {
+                        running.cancel(true);
+                    }
+                });
+            };
+            synchronized (this) {
+                waiting.add(start);
+            }
+            drain();
+            return result;
+        }
+
+        private void release() {
+            synchronized (this) {
+                active--;
+                completed++;
+            }
+            drain();
+        }
+
+        /** One thread starts queued calls at a time, so calls completing inline do not recurse. */
+        private void drain() {
+            while (true) {
+                Runnable next;
+                synchronized (this) {
+                    if (starting || active >= permits || waiting.isEmpty()) {
+                        return;
+                    }
+                    starting = true;
+                    active++;
+                    peak = Math.max(peak, active);
+                    next = waiting.poll();
+                }
+                try {
+                    next.run();
+                } finally {
+                    synchronized (this) {
+                        starting = false;
+                    }
+                }
+            }
+        }
+
+        synchronized String stats() {
+            return String.format("%s: %,d calls, peak %d/%d in flight", name, completed, peak, permits);
+        }
+    }
+
+    /** ==========================================
+     *  2. Pipeline definition (immutable builder)
+     * ========================================== */
+    private static final class Stage {
+        final AsyncLimiter limiter;
+        final Function<Object, ? extends CompletionStage<?>> call;
+
+        Stage(AsyncLimiter limiter, Function<Object, ? extends CompletionStage<?>> call) {
+            this.limiter = limiter;
+            this.call = call;
+        }
+    }
+
+    private final List<Stage> stages;
+    private final boolean ordered;
+    private final int window;
+
+    private AsyncPipeline(List<Stage> stages, boolean ordered, int window) {
+        this.stages = stages;
+        this.ordered = ordered;
+        this.window = window;
+    }
+
+    public static <I> AsyncPipeline<I, I> create() {
+        return new AsyncPipeline<>(Collections.emptyList(), true, 0);
+    }
+
+    /** Adds an async call, e.g. client.sendAsync(...), with at most maxInFlight running. */
+    @SuppressWarnings("unchecked")
+    public <R> AsyncPipeline<I, R> thenAsync(String name, int maxInFlight,
+                                             Function<? super O, ? extends CompletionStage<R>> call) {
+        List<Stage> next = new ArrayList<>(stages);
+        next.add(new Stage(new AsyncLimiter(name, maxInFlight), (Function<Object, ? extends CompletionStage<?>>) call));
+        return new AsyncPipeline<>(next, ordered, window);
+    }
+
+    /** Adds a blocking call, run on the executor with at most maxInFlight running. */
+    public <R> AsyncPipeline<I, R> thenBlocking(String name, int maxInFlight, Executor executor,
+                                                Function<? super O, ? extends R> call) {
+        return thenAsync(name, maxInFlight, value -> CompletableFuture.supplyAsync(() -> call.apply(value), executor));
+    }
+
+    /** Deliver results as they complete instead of in input order. */
+    public AsyncPipeline<I, O> unordered() {
+        return new AsyncPipeline<>(stages, false, window);
+    }
+
+    /** Max elements in flight or waiting for delivery; defaults to the sum of the stage caps. */
+    public AsyncPipeline<I, O> window(int elements) {
+        if (elements < 1) {
+            throw new IllegalArgumentException("Window must be positive: " + elements);
+        }
+        return new AsyncPipeline<>(stages, ordered, elements);
+    }
+
+    public String stats() {
+        return stages.stream().map(s -> s.limiter.stats()).collect(Collectors.joining("; "));
+    }
+
+    /** ==========================================
+     *  3. Running – returns the number of delivered results
+     * ========================================== */
+    public CompletableFuture<Long> run(Stream<? extends I> inputs, Consumer<? super O> sink) {
+        int limit = window > 0 ? window : Math.max(1, stages.stream().mapToInt(s -> s.limiter.permits).sum());
+        Run run = new Run(inputs.iterator(), sink, limit);
+        run.done.whenComplete((count, error) -> {
+            if (run.done.isCancelled()) {
+                run.fail(new CancellationException("Pipeline cancelled"));
+            }
+            inputs.close();
+        });
+        run.pull();
+        return run.done;
+    }
+
+    public CompletableFuture<List<O>> toList(Stream<? extends I> inputs) {
+        List<O> results = new ArrayList<>();
+        return run(inputs, results::add).thenApply(count -> results);
+    }
+
+    private final class Run {
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+        final Set<CompletableFuture<?>> outstanding = ConcurrentHashMap.newKeySet();
+        private final Iterator<? extends I> input;
+        private final Consumer<? super O> sink;
+        private final int limit;
+        private final Map<Long, O> reorder = new HashMap<>();
+        private long nextIndex;
+        private long nextToDeliver;
+        private long delivered;
+        private int active;
+        private boolean exhausted;
+        private boolean pulling;
+        private volatile boolean failed;
+
+        Run(Iterator<? extends I> input, Consumer<? super O> sink, int limit) {
+            this.input = input;
+            this.sink = sink;
+            this.limit = limit;
+        }
+
+        /** Starts inputs while the window has room; reentrant calls leave it to the running loop. */
+        void pull() {
+            while (true) {
+                long index;
+                I value;
+                synchronized (this) {
+                    if (pulling || failed || exhausted || active + reorder.size() >= limit) {
+                        return;
+                    }
+                    try {
+                        if (!input.hasNext()) {
+                            exhausted = true;
+                            finishIfDone();
+                            return;
+                        }
+                        value = input.next();
+                    } catch (RuntimeException e) {
+                        fail(e);
+                        return;
+                    }
+                    pulling = true;
+                    active++;
+                    index = nextIndex++;
+                }
+                try {
+                    launch(index, value);
+                } finally {
+                    synchronized (this) {
+                        pulling = false;
+                    }
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void launch(long index, I value) {
+            CompletableFuture<Object> element = CompletableFuture.completedFuture(value);
+            for (Stage stage : stages) {
+                element = element.thenCompose(v -> {
+                    if (failed) {
+                        // the run is over: do not take a permit or start the call
+                        return CompletableFuture.failedFuture(new CancellationException("Pipeline run failed"));
+                    }
+                    CompletableFuture<Object> call = stage.limiter.submit(() -> (CompletionStage<Object>) stage.call.apply(v));
+                    outstanding.add(call);
+                    call.whenComplete((r, e) -> outstanding.remove(call));
+                    if (failed) {
+                        call.cancel(true);      // fail() ran between the check and add(): it missed this call
+                    }
+                    return call;
+                });
+            }
+            element.whenComplete((result, error) -> complete(index, (O) result, error));
+        }
+
+        private void complete(long index, O result, Throwable error) {
+            if (error != null) {
+                fail(error);
+                return;
+            }
+            synchronized (this) {
+                if (failed) {
+                    return;
+                }
+                active--;
+                try {
+                    if (ordered) {
+                        reorder.put(index, result);
+                        while (reorder.containsKey(nextToDeliver)) {
+                            sink.accept(reorder.remove(nextToDeliver++));
+                            delivered++;
+                        }
+                    } else {
+                        sink.accept(result);
+                        delivered++;
+                    }
+                } catch (RuntimeException e) {
+                    fail(e);
+                    return;
+                }
+                finishIfDone();
+            }
+            pull();
+        }
+
+        private void finishIfDone() {
+            if (exhausted && active == 0 && reorder.isEmpty()) {
+                done.complete(delivered);
+            }
+        }
+
+        void fail(Throwable error) {
+            synchronized (this) {
+                if (failed) {
+                    return;
+                }
+                failed = true;
+                reorder.clear();
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            done.completeExceptionally(cause);
+            for (CompletableFuture<?> call : outstanding) {
+                call.cancel(true);
+            }
+        }
+    }
+
+    /** ==========================================
+     *  Main Method
+     * ========================================== */
+
+    // Fake remote service: completes after 5-25 ms and counts concurrent requests
+    static final ScheduledExecutorService NETWORK = Executors.newScheduledThreadPool(2);
+    static final AtomicInteger CONCURRENT = new AtomicInteger();
+    static final AtomicInteger PEAK = new AtomicInteger();
+    static final AtomicInteger STARTED = new AtomicInteger();
+
+    static CompletableFuture<String> fetchAccount(long id, long failOn) {
+        STARTED.incrementAndGet();
+        PEAK.accumulateAndGet(CONCURRENT.incrementAndGet(), Math::max);
+        CompletableFuture<String> response = new CompletableFuture<>();
+        NETWORK.schedule(() -> {
+            CONCURRENT.decrementAndGet();
+            if (id == failOn) {
+                response.completeExceptionally(new IllegalStateException("HTTP 503 for account " + id));
+            } else {
+                response.complete("ACC_" + id);
+            }
+        }, 5 + id * 7 % 21, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    static String scoreRisk(String account) {
+        try { Thread.sleep(2); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        return account + ":" + (account.hashCode() & 0xff);
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Bounded-Parallelism Async Pipeline ===\n");
+        ExecutorService scorers = Executors.newFixedThreadPool(4);
+
+        System.out.println("------------------------------------");
+        System.out.println("* 1. 2,000 calls, ordered *");
+        AsyncPipeline<Long, String> pipeline = AsyncPipeline.<Long>create()
+                .thenAsync("fetchAccount", 50, id -> fetchAccount(id, -1))
+                .thenBlocking("scoreRisk", 4, scorers, AsyncPipeline::scoreRisk);
+        long t0 = System.nanoTime();
+        List<String> scored = pipeline.toList(LongStream.range(0, 2_000).boxed()).join();
+        System.out.printf("%,d results in %.0f ms (one by one: ~%,d ms)%n", scored.size(), (System.nanoTime() - t0) / 1e6,
+                LongStream.range(0, 2_000).map(id -> 7 + id * 7 % 21).sum());
+        System.out.println("In input order: " + scored.get(0) + ", " + scored.get(1) + ", ... " + scored.get(1_999));
+        System.out.println("Server saw at most " + PEAK.get() + " concurrent requests");
+        System.out.println(pipeline.stats());
+
+        System.out.println("\n------------------------------------");
+        System.out.println("* 2. Unordered delivery *");
+        List<String> firsts = new ArrayList<>();
+        AsyncPipeline.<Long>create().thenAsync("fetchAccount", 20, id -> fetchAccount(id, -1)).unordered()
+                .run(LongStream.range(0, 40).boxed(), account -> {
+                    if (firsts.size() < 6) {
+                        firsts.add(account);
+                    }
+                }).join();
+        System.out.println("First completed: " + firsts);
+
+        System.out.println("\n------------------------------------");
+        System.out.println("* 3. Fail fast *");
+        STARTED.set(0);
+        CompletableFuture<List<String>> failing = AsyncPipeline.<Long>create()
+                .thenAsync("fetchAccount", 50, id -> fetchAccount(id, 137))
+                .toList(LongStream.range(0, 2_000).boxed());
+        try {
+            failing.join();
+        } catch (CompletionException e) {
+            System.out.println("Run failed: " + e.getCause().getMessage());
+        }
+        Thread.sleep(50);
+        System.out.println("Calls started before the failure stopped the run: " + STARTED.get() + " of 2,000");
+
+        scorers.shutdown();
+        NETWORK.shutdown();
+
+        System.out.println("\n------------------------------------");
+        System.out.println("* Key Takeaways *");
+        System.out.println("- Each stage caps its in-flight calls without blocking threads.");
+        System.out.println("- Inputs are pulled only when the window has room (back-pressure).");
+        System.out.println("- The first failure cancels outstanding calls and fails the run.");
+    }
+}
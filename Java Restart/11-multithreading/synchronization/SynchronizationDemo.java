@@ -17,6 +17,8 @@
  * 5. Real-world example (bank account)
  */
 
+import java.math.BigDecimal;
+
 public class SynchronizationDemo {
 
     /** ==========================================
@@ -72,32 +74,37 @@ public class SynchronizationDemo {
      *  5. Real-world Example: Bank Account
      * ========================================== */
     static class BankAccount {
-        private int balance = 1000;
+        // Money as long cents (fixed-point): exact, and addExact/subtractExact fail loudly on overflow
+        private long balanceCents = 100_000; // 1000.00
 
         // deposit method (synchronized)
-        synchronized void deposit(int amount) {
-            System.out.println(Thread.currentThread().getName() + " depositing " + amount);
-            int newBalance = balance + amount;
+        synchronized void deposit(long amountCents) {
+            System.out.println(Thread.currentThread().getName() + " depositing " + format(amountCents));
+            long newBalance = Math.addExact(balanceCents, amountCents);
             try { Thread.sleep(100); } catch (InterruptedException ignored) {}
-            balance = newBalance;
-            System.out.println(Thread.currentThread().getName() + " new balance: " + balance);
+            balanceCents = newBalance;
+            System.out.println(Thread.currentThread().getName() + " new balance: " + format(balanceCents));
         }
 
         // withdraw method (synchronized)
-        synchronized void withdraw(int amount) {
-            System.out.println(Thread.currentThread().getName() + " withdrawing " + amount);
-            if (balance < amount) {
+        synchronized void withdraw(long amountCents) {
+            System.out.println(Thread.currentThread().getName() + " withdrawing " + format(amountCents));
+            if (balanceCents < amountCents) {
                 System.out.println("Insufficient balance for " + Thread.currentThread().getName());
             } else {
-                int newBalance = balance - amount;
+                long newBalance = Math.subtractExact(balanceCents, amountCents);
                 try { Thread.sleep(100); } catch (InterruptedException ignored) {}
-                balance = newBalance;
-                System.out.println(Thread.currentThread().getName() + " new balance: " + balance);
+                balanceCents = newBalance;
+                System.out.println(Thread.currentThread().getName() + " new balance: " + format(balanceCents));
             }
         }
 
-        public int getBalance() {
-            return balance;
+        public synchronized long getBalanceCents() {
+            return balanceCents;
+        }
+
+        static String format(long cents) {
+            return BigDecimal.valueOf(cents, 2).toPlainString();
         }
     }
 
@@ -175,9 +182,9 @@ public class SynchronizationDemo {
         System.out.println("* 5. Real-world Example: Bank Account *");
 
         BankAccount account = new BankAccount();
-        Thread d1 = new Thread(() -> account.deposit(500), "Depositor-1");
-        Thread w1 = new Thread(() -> account.withdraw(700), "Withdrawer-1");
-        Thread w2 = new Thread(() -> account.withdraw(400), "Withdrawer-2");
+        Thread d1 = new Thread(() -> account.deposit(50_000), "Depositor-1");    // 500.00
+        Thread w1 = new Thread(() -> account.withdraw(70_000), "Withdrawer-1");  // 700.00
+        Thread w2 = new Thread(() -> account.withdraw(40_000), "Withdrawer-2");  // 400.00
 
         d1.start();
         w1.start();
@@ -187,7 +194,7 @@ public class SynchronizationDemo {
         w1.join();
         w2.join();
 
-        System.out.println("Final Account Balance: " + account.getBalance());
+        System.out.println("Final Account Balance: " + BankAccount.format(account.getBalanceCents()));
 
         System.out.println("\n------------------------------------");
         System.out.println("* Key Takeaways *");
@@ -0,0 +1,216 @@
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * ADAPTIVE PER-ACCOUNT ANOMALY SCORING
+ * ------------------------------------
+ * isHighValue compares every amount with one fixed $10,000 limit: a $5,000 debit
+ * from an account that usually spends $20 passes, while a payroll account moving
+ * $15,000 every day is flagged every day. This store learns each account's normal
+ * behaviour online, in O(1) per transaction and without keeping history:
+ *
+ * ✅ Running mean / variance of log(amount) (Welford) – amounts are roughly
+ *    log-normal, so deviations are measured in orders of magnitude
+ * ✅ EWMA of the amount and of the time between transactions (frequency)
+ * ✅ amountScore(): z-score of an amount against the account's own history
+ * ✅ burstScore(): how many times faster than usual the account is transacting
+ * ✅ observe() / asRiskAnalyzer(): a transaction is anomalous when its amount
+ *    z-score exceeds the limit (e.g. 3 = three standard deviations) or when it
+ *    arrives more than burstLimit times faster than the account's usual pace
+ *
+ * State is plain arrays indexed by AccountSymbolTable id; like TransactionStore
+ * it is single-writer, so a multi-threaded caller gives each writer thread its
+ * own instance. Until an account has minSamples transactions it is scored with
+ * the old fixed limit only.
+ */
+public class AccountBehaviorStats {
+
+    private final AccountSymbolTable accounts;
+    private final double alpha;            // EWMA weight of the newest observation
+    private final int minSamples;
+    private final long warmupLimitCents;
+    private final double burstLimit;
+
+    private long[] counts = new long[64];
+    private double[] logMean = new double[64];
+    private double[] logM2 = new double[64];
+    private double[] ewmaAmount = new double[64];
+    private double[] ewmaGapMillis = new double[64];
+    private long[] lastTime = new long[64];
+
+    public AccountBehaviorStats(AccountSymbolTable accounts) {
+        this(accounts, 0.05, 20, 1_000_000L, 50);
+    }
+
+    /** burstLimit: how many times faster than its usual pace an account may transact before it is flagged. */
+    public AccountBehaviorStats(AccountSymbolTable accounts, double alpha, int minSamples, long warmupLimitCents,
+                                double burstLimit) {
+        this.accounts = accounts;
+        this.alpha = alpha;
+        this.minSamples = minSamples;
+        this.warmupLimitCents = warmupLimitCents;
+        this.burstLimit = burstLimit;
+    }
+
+    private void ensureCapacity(int accountId) {
+        if (accountId < counts.length) {
+            return;
+        }
+        int n = Math.max(accountId + 1, counts.length << 1);
+        counts = Arrays.copyOf(counts, n);
+        logMean = Arrays.copyOf(logMean, n);
+        logM2 = Arrays.copyOf(logM2, n);
+        ewmaAmount = Arrays.copyOf(ewmaAmount, n);
+        ewmaGapMillis = Arrays.copyOf(ewmaGapMillis, n);
+        lastTime = Arrays.copyOf(lastTime, n);
+    }
+
+    // ==========================================
+    // 1. ONLINE UPDATE (Welford + EWMA)
+    // ==========================================
+
+    public void update(int accountId, long cents, long time) {
+        ensureCapacity(accountId);
+        long n = ++counts[accountId];
+        double x = Math.log1p(Math.max(cents, 0));
+        double delta = x - logMean[accountId];
+        logMean[accountId] += delta / n;
+        logM2[accountId] += delta * (x - logMean[accountId]);
+
+        if (n == 1) {
+            ewmaAmount[accountId] = cents;
+        } else {
+            ewmaAmount[accountId] += alpha * (cents - ewmaAmount[accountId]);
+            double gap = Math.max(0, time - lastTime[accountId]);
+            ewmaGapMillis[accountId] = n == 2 ? gap : ewmaGapMillis[accountId] + alpha * (gap - ewmaGapMillis[accountId]);
+        }
+        lastTime[accountId] = time;
+    }
+
+    // ==========================================
+    // 2. SCORING (against the state before this transaction)
+    // ==========================================
+
+    public boolean warmedUp(int accountId) {
+        return accountId < counts.length && counts[accountId] >= minSamples;
+    }
+
+    /** Standard deviations between log(amount) and the account's mean; 0 before warm-up. */
+    public double amountScore(int accountId, long cents) {
+        if (!warmedUp(accountId)) {
+            return 0;
+        }
+        double sd = Math.sqrt(logM2[accountId] / (counts[accountId] - 1));
+        double x = Math.log1p(Math.max(cents, 0));
+        return (x - logMean[accountId]) / Math.max(sd, 0.05);     // floor: very regular accounts
+    }
+
+    /** Usual gap / current gap: 10 means "ten times faster than this account normally transacts". */
+    public double burstScore(int accountId, long time) {
+        if (!warmedUp(accountId)) {
+            return 0;
+        }
+        double gap = Math.max(1, time - lastTime[accountId]);
+        return ewmaGapMillis[accountId] / gap;
+    }
+
+    /** Amount more than zLimit deviations above normal, or a burst; cold accounts use the warm-up limit. */
+    private boolean anomalous(int accountId, long cents, long time, double zLimit) {
+        return warmedUp(accountId)
+                ? amountScore(accountId, cents) > zLimit || burstScore(accountId, time) > burstLimit
+                : cents > warmupLimitCents;
+    }
+
+    /**
+     * Ingest path: scores the transaction, then learns from it. Returns true when the
+     * amount is more than zLimit deviations above normal, when the account is
+     * transacting more than burstLimit times faster than usual, or (before warm-up)
+     * when the amount is above the warm-up limit.
+     */
+    public boolean observe(int accountId, long cents, long time, double zLimit) {
+        boolean anomalous = anomalous(accountId, cents, time, zLimit);
+        update(accountId, cents, time);
+        return anomalous;
+    }
+
+    public boolean observe(LambdasDemo.Transaction t, double zLimit) {
+        return observe(accounts.intern(t.getAccountId()), t.getAmountCents(),
+                TransactionStore.toEpochMillis(t.getTimestamp()), zLimit);
+    }
+
+    /** Read-only analyzer scored like observe(): limit is the z-score threshold; unknown accounts use the warm-up limit. */
+    public LambdasDemo.RiskAnalyzer asRiskAnalyzer() {
+        return (t, limit) -> {
+            int id = accounts.idOf(t.getAccountId());
+            return id >= 0
+                    ? anomalous(id, t.getAmountCents(), TransactionStore.toEpochMillis(t.getTimestamp()), limit.doubleValue())
+                    : t.getAmountCents() > warmupLimitCents;
+        };
+    }
+
+    public double typicalAmountCents(int accountId) {
+        return accountId < counts.length ? ewmaAmount[accountId] : 0;
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> ADAPTIVE PER-ACCOUNT ANOMALY SCORING <<<\n");
+
+        AccountSymbolTable accounts = new AccountSymbolTable();
+        AccountBehaviorStats stats = new AccountBehaviorStats(accounts);
+
+        // Each account has its own normal spend: from $20 coffee to $15,000 payroll
+        String[] names = {"ACC_COFFEE", "ACC_RENT", "ACC_PAYROLL"};
+        double[] typical = {20, 1_200, 15_000};
+        Random rnd = new Random(17);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+        List<LambdasDemo.Transaction> history = new ArrayList<>();
+        int seq = 1_000;
+        for (int day = 0; day < 200; day++) {
+            for (int a = 0; a < names.length; a++) {
+                double amount = typical[a] * Math.exp(rnd.nextGaussian() * 0.3);
+                history.add(new LambdasDemo.Transaction("TXN_" + seq++, names[a], amount,
+                        LambdasDemo.TxnType.DEBIT, start.plusDays(day).plusMinutes(a)));
+            }
+        }
+
+        long t0 = System.nanoTime();
+        history.forEach(t -> stats.observe(t, 4.0));
+        System.out.printf("Learned %d transactions in %.2f ms%n%n", history.size(), (System.nanoTime() - t0) / 1e6);
+
+        LocalDateTime later = start.plusDays(200);
+        List<LambdasDemo.Transaction> probes = Arrays.asList(
+            new LambdasDemo.Transaction("TXN_9001", "ACC_COFFEE", 5_000.00, LambdasDemo.TxnType.DEBIT, later),
+            new LambdasDemo.Transaction("TXN_9002", "ACC_PAYROLL", 16_500.00, LambdasDemo.TxnType.DEBIT, later),
+            new LambdasDemo.Transaction("TXN_9003", "ACC_RENT", 1_150.00, LambdasDemo.TxnType.DEBIT, later),
+            new LambdasDemo.Transaction("TXN_9004", "ACC_NEW", 12_000.00, LambdasDemo.TxnType.DEBIT, later),
+            // a normal-sized rent payment, but minutes after the last one instead of a day later
+            new LambdasDemo.Transaction("TXN_9005", "ACC_RENT", 1_180.00, LambdasDemo.TxnType.DEBIT,
+                    start.plusDays(199).plusMinutes(10))
+        );
+
+        BigDecimal fixedLimit = new BigDecimal("10000");
+        BigDecimal zLimit = BigDecimal.valueOf(4);
+        LambdasDemo.RiskAnalyzer adaptive = stats.asRiskAnalyzer();
+        System.out.println("Txn       Account      Amount      Fixed $10k  Adaptive (z > 4 or pace > 50x)");
+        for (LambdasDemo.Transaction t : probes) {
+            int id = accounts.idOf(t.getAccountId());
+            long time = TransactionStore.toEpochMillis(t.getTimestamp());
+            String z = id >= 0 && stats.warmedUp(id)
+                    ? String.format("z=%.1f, pace %.0fx", stats.amountScore(id, t.getAmountCents()),
+                            stats.burstScore(id, time)) : "cold";
+            System.out.printf("%-9s %-12s %-11s %-11s %s (%s)%n", t.getId(), t.getAccountId(),
+                    Money.format(t.getAmountCents()), t.getAmount().compareTo(fixedLimit) > 0,
+                    adaptive.analyze(t, zLimit), z);
+        }
+
+        int coffee = accounts.idOf("ACC_COFFEE");
+        long lastCoffee = TransactionStore.toEpochMillis(history.get(history.size() - 3).getTimestamp());
+        System.out.printf("%nACC_COFFEE typical $ %.2f; a second purchase 1 min later is %.0fx its usual pace%n",
+                stats.typicalAmountCents(coffee) / 100, stats.burstScore(coffee, lastCoffee + 60_000));
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ACCOUNT SYMBOL TABLE (Dictionary Encoding)
+ * ------------------------------------------
+ * Every Transaction carries its own accountId String ("ACC_A"), so grouping by
+ * account hashes and compares strings on every row. The engine instead encodes
+ * each account once, at ingest, into a dense int id:
+ *
+ * ✅ intern("ACC_A") -> 0, intern("ACC_B") -> 1, ... (ids are 0..size()-1, never reused)
+ * ✅ Positions, fraud windows and groupings become arrays indexed by id
+ * ✅ name(id) maps back to the String only when a report is printed
+ *
+ * Lookups are lock-free (ConcurrentHashMap); only the first sighting of a new
+ * account takes the table's lock to assign the next id.
+ */
+public class AccountSymbolTable {
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private volatile int size;
+
+    /** Returns the id for the account, assigning the next dense id on first sight. */
+    public int intern(String account) {
+        Integer id = ids.get(account);
+        return id != null ? id : assign(account);
+    }
+
+    private synchronized int assign(String account) {
+        Integer existing = ids.get(account);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size;
+        String[] table = names;
+        if (id == table.length) {
+            table = Arrays.copyOf(table, id << 1);
+        }
+        table[id] = account;
+        names = table;      // publish the array before the id becomes visible
+        size = id + 1;
+        ids.put(account, id);
+        return id;
+    }
+
+    /** Id of a known account, or -1 if it has never been interned. */
+    public int idOf(String account) {
+        Integer id = ids.get(account);
+        return id == null ? -1 : id;
+    }
+
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown account id: " + id);
+        }
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> ACCOUNT SYMBOL TABLE <<<\n");
+
+        AccountSymbolTable symbols = new AccountSymbolTable();
+        TransactionStore store = new TransactionStore(symbols, 16);
+        PositionAggregator positions = new PositionAggregator(symbols);
+
+        for (LambdasDemo.Transaction t : LambdasDemo.samplePool()) {
+            store.append(t);
+            positions.add(t);
+        }
+
+        System.out.println("Encoded " + store.size() + " transactions over " + symbols.size() + " accounts:");
+        for (int id = 0; id < symbols.size(); id++) {
+            System.out.printf("  id %d -> %-6s | Net Position: $ %s%n", id, symbols.name(id),
+                    Money.format(positions.positionCents(id)));
+        }
+    }
+}
@@ -0,0 +1,286 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ASYNCHRONOUS AUDIT LOG WITH GROUP COMMIT
+ * ----------------------------------------
+ * LambdasDemo.AuditLogger is called synchronously with a batch of transactions,
+ * so a slow sink stalls the fraud pipeline. This implementation only copies the
+ * entries into a bounded buffer and returns; a dedicated writer thread does the I/O.
+ *
+ * ✅ Bounded ring buffer (ArrayBlockingQueue) in front of the file
+ * ✅ Writer drains everything that is waiting and writes it as one batch
+ * ✅ Group commit: one FileChannel.force() (fsync) per batch, not per entry
+ * ✅ Backpressure: log() blocks when the buffer is full instead of growing the heap;
+ *    it fails instead of waiting forever if the writer thread dies
+ * ✅ No silent loss: once the writer has failed, every log() call that is still
+ *    running or starts later throws; entries logged just before the failure are
+ *    reported by flush(), which is the durability point
+ * ✅ Metrics: queue depth, batches, entries, commit latency, backpressure stalls
+ *
+ * Entries are appended to the file as one CSV line each:
+ *   context,txnId,accountId,amount,type,status
+ * The status is captured when log() is called, not when the line is written.
+ * Once close() has started, log() throws; batches already inside log() are
+ * finished and written before the file is closed.
+ */
+public class AsyncAuditLogger implements LambdasDemo.AuditLogger, AutoCloseable {
+
+    private static final class Entry {
+        final String context;
+        final String txnId;
+        final String accountId;
+        final String amount;
+        final LambdasDemo.TxnType type;
+        final LambdasDemo.TxnStatus status;
+
+        Entry(String context, LambdasDemo.Transaction t) {
+            this.context = context;
+            this.txnId = t.getId();
+            this.accountId = t.getAccountId();
+            this.amount = t.getAmount().toPlainString();
+            this.type = t.getType();
+            this.status = t.getStatus();
+        }
+    }
+
+    private final ArrayBlockingQueue<Entry> buffer;
+    private final int maxBatch;
+    private final FileChannel channel;
+    private final Thread writer;
+    private volatile boolean running = true;      // writer keeps polling while set
+    private volatile boolean closing;             // producers are refused once set
+    private final AtomicInteger activeProducers = new AtomicInteger();
+    private volatile Throwable failure;
+
+    // Sequence numbers let flush() wait for everything enqueued so far
+    private final AtomicLong enqueued = new AtomicLong();
+    private long committed;                 // guarded by 'this'
+
+    // Metrics (written by the writer thread only, read by anyone)
+    private volatile long batches;
+    private volatile long entriesWritten;
+    private volatile long totalCommitNanos;
+    private volatile long maxCommitNanos;
+    private final AtomicLong backpressureStalls = new AtomicLong();
+
+    public AsyncAuditLogger(Path file, int capacity, int maxBatch) throws IOException {
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.writer = new Thread(this::writeLoop, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // ==========================================
+    // 1. PRODUCER SIDE (called by the pipeline)
+    // ==========================================
+
+    @Override
+    public void log(String context, List<LambdasDemo.Transaction> batch) {
+        activeProducers.incrementAndGet();      // close() waits for us before stopping the writer
+        try {
+            checkHealthy();
+            for (LambdasDemo.Transaction t : batch) {
+                Entry entry = new Entry(context, t);
+                checkWriter();
+                if (!buffer.offer(entry)) {
+                    backpressureStalls.incrementAndGet();
+                    try {
+                        do {
+                            checkWriter();          // a dead writer never frees space
+                        } while (!buffer.offer(entry, 50, TimeUnit.MILLISECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for audit buffer space", e);
+                    }
+                }
+                enqueued.incrementAndGet();
+            }
+            checkWriter();      // the writer died while we were enqueueing: these entries may never be written
+        } finally {
+            activeProducers.decrementAndGet();
+        }
+    }
+
+    /** Blocks until every entry logged before this call is durable on disk. */
+    public void flush() throws InterruptedException {
+        long target = enqueued.get();
+        synchronized (this) {
+            while (committed < target) {
+                checkHealthy();
+                wait(100);
+            }
+        }
+    }
+
+    private void checkHealthy() {
+        checkWriter();
+        if (closing) {
+            throw new IllegalStateException("Audit logger is closed");
+        }
+    }
+
+    private void checkWriter() {
+        if (failure != null) {
+            throw new IllegalStateException("Audit writer failed", failure);
+        }
+    }
+
+    // ==========================================
+    // 2. WRITER SIDE (group commit)
+    // ==========================================
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(maxBatch);
+        ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+        try {
+            while (running || !buffer.isEmpty()) {
+                Entry first = buffer.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;           // idle: re-check the running flag
+                }
+                batch.add(first);
+                buffer.drainTo(batch, maxBatch - 1);
+                out = commit(batch, out);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            failure = e;                // the buffer stays full: a waiting producer times out and throws
+        } finally {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private ByteBuffer commit(List<Entry> batch, ByteBuffer out) throws IOException {
+        long start = System.nanoTime();
+        out.clear();
+        for (Entry e : batch) {
+            byte[] line = (e.context + ',' + e.txnId + ',' + e.accountId + ',' + e.amount + ','
+                    + e.type + ',' + e.status + '\n').getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < line.length) {
+                out.flip();
+                writeFully(out);
+                out.clear();
+                if (out.capacity() < line.length) {
+                    out = ByteBuffer.allocateDirect(line.length);
+                }
+            }
+            out.put(line);
+        }
+        out.flip();
+        writeFully(out);
+        channel.force(false); // the single fsync for the whole batch
+
+        long elapsed = System.nanoTime() - start;
+        batches++;
+        entriesWritten += batch.size();
+        totalCommitNanos += elapsed;
+        if (elapsed > maxCommitNanos) {
+            maxCommitNanos = elapsed;
+        }
+        synchronized (this) {
+            committed += batch.size();
+            notifyAll();
+        }
+        return out;
+    }
+
+    private void writeFully(ByteBuffer out) throws IOException {
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    // ==========================================
+    // 3. METRICS & LIFECYCLE
+    // ==========================================
+
+    public int queueDepth() { return buffer.size(); }
+    public long batchCount() { return batches; }
+    public long entriesWritten() { return entriesWritten; }
+    public long backpressureStalls() { return backpressureStalls.get(); }
+    public long maxCommitMicros() { return maxCommitNanos / 1_000; }
+
+    public long avgCommitMicros() {
+        long b = batches;
+        return b == 0 ? 0 : totalCommitNanos / b / 1_000;
+    }
+
+    /** Stops accepting entries, drains what is buffered and closes the file. */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        try {
+            while (activeProducers.get() > 0 && failure == null) {
+                Thread.sleep(1);                    // in-flight log() calls finish their batch
+            }
+            running = false;
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            channel.close();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(new IOException("Audit writer failed", failure));
+        }
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(">>> ASYNC AUDIT LOGGER (Group Commit) <<<\n");
+
+        Path file = Files.createTempFile("audit-", ".log");
+        List<LambdasDemo.Transaction> pool = LambdasDemo.samplePool();
+
+        AsyncAuditLogger closed;
+        try (AsyncAuditLogger audit = new AsyncAuditLogger(file, 1_024, 512)) {
+            LambdasDemo.AuditLogger logger = audit; // the pipeline only sees the functional interface
+            closed = audit;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < 5_000; i++) {
+                logger.log("SECURITY_AUDIT", pool);
+            }
+            long producerMicros = (System.nanoTime() - start) / 1_000;
+            audit.flush();
+
+            System.out.println("Producer time for 40,000 entries: " + producerMicros + " µs");
+            System.out.println("Entries written  : " + audit.entriesWritten());
+            System.out.println("Batches (fsyncs) : " + audit.batchCount());
+            System.out.println("Avg commit       : " + audit.avgCommitMicros() + " µs");
+            System.out.println("Max commit       : " + audit.maxCommitMicros() + " µs");
+            System.out.println("Backpressure     : " + audit.backpressureStalls() + " stalls");
+            System.out.println("Queue depth now  : " + audit.queueDepth());
+        }
+
+        try {
+            closed.log("LATE", pool);
+        } catch (IllegalStateException e) {
+            System.out.println("\nlog() after close: " + e.getMessage());
+        }
+
+        System.out.println("First line: " + Files.readAllLines(file).get(0));
+        System.out.println("File size : " + Files.size(file) + " bytes");
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,522 @@
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * BITMAP SECONDARY INDEXES (TxnType / TxnStatus)
+ * ----------------------------------------------
+ * "All FLAGGED DEBITs" in LambdasDemo is a filter() over every transaction. This
+ * index keeps, for each TxnType and each TxnStatus value, the set of matching
+ * TransactionStore rows as a compressed bitmap:
+ *
+ * ✅ Roaring-style layout: rows are split into chunks of 65,536; a chunk with
+ *    few rows is a sorted char[] (2 bytes per row), a dense chunk is a 1,024-word
+ *    long[] bitmap (8 KB, 1 bit per row)
+ * ✅ and / or / andNot work chunk by chunk (word-wise on dense chunks), so
+ *    combined filters never touch rows that cannot match
+ * ✅ Maintained as a TransactionStore.RowListener: set on append, moved between
+ *    status bitmaps on every status CAS
+ *
+ * Status changes arrive from whichever thread won the CAS, so the index
+ * synchronizes its own updates and queries; query results are independent copies.
+ * A status change re-reads the row's current status from the store instead of
+ * trusting from/to, so the row ends up in exactly one status bitmap whatever
+ * order the notifications run in.
+ */
+public class BitmapIndex implements TransactionStore.RowListener {
+
+    // ==========================================
+    // 1. COMPRESSED BITMAP
+    // ==========================================
+
+    static final class RowBitmap {
+        private static final int ARRAY_MAX = 4096;       // above this a bitmap chunk is smaller
+
+        /** One 65,536-row chunk: either a sorted array of low bits or a 1,024-word bitmap. */
+        private static final class Chunk {
+            char[] array;
+            long[] bits;
+            int cardinality;
+
+            static Chunk ofArray(char[] values, int n) {
+                Chunk c = new Chunk();
+                c.array = values;
+                c.cardinality = n;
+                return c.n() > ARRAY_MAX ? c.toBits() : c;
+            }
+
+            static Chunk ofBits(long[] words) {
+                Chunk c = new Chunk();
+                c.bits = words;
+                for (long w : words) {
+                    c.cardinality += Long.bitCount(w);
+                }
+                return c.cardinality <= ARRAY_MAX ? c.toArray() : c;
+            }
+
+            int n() { return cardinality; }
+
+            boolean contains(char low) {
+                return bits != null
+                        ? (bits[low >>> 6] & (1L << low)) != 0
+                        : Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+            }
+
+            boolean add(char low) {
+                if (bits != null) {
+                    long before = bits[low >>> 6];
+                    bits[low >>> 6] = before | (1L << low);
+                    if (before == bits[low >>> 6]) {
+                        return false;
+                    }
+                    cardinality++;
+                    return true;
+                }
+                // Appends come in row order, so the common case is "after the last element"
+                int pos = cardinality > 0 && array[cardinality - 1] < low
+                        ? -(cardinality + 1)
+                        : Arrays.binarySearch(array, 0, cardinality, low);
+                if (pos >= 0) {
+                    return false;
+                }
+                pos = -pos - 1;
+                if (cardinality == ARRAY_MAX) {
+                    Chunk dense = toBits();
+                    bits = dense.bits;
+                    array = null;
+                    return add(low);
+                }
+                if (cardinality == array.length) {
+                    array = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality << 1));
+                }
+                System.arraycopy(array, pos, array, pos + 1, cardinality - pos);
+                array[pos] = low;
+                cardinality++;
+                return true;
+            }
+
+            boolean remove(char low) {
+                if (bits != null) {
+                    long before = bits[low >>> 6];
+                    bits[low >>> 6] = before & ~(1L << low);
+                    if (before == bits[low >>> 6]) {
+                        return false;
+                    }
+                    cardinality--;
+                    if (cardinality <= ARRAY_MAX / 2) {           // hysteresis: no flip-flopping at the limit
+                        array = toArray().array;
+                        bits = null;
+                    }
+                    return true;
+                }
+                int pos = Arrays.binarySearch(array, 0, cardinality, low);
+                if (pos < 0) {
+                    return false;
+                }
+                System.arraycopy(array, pos + 1, array, pos, cardinality - pos - 1);
+                cardinality--;
+                return true;
+            }
+
+            long[] words() {
+                if (bits != null) {
+                    return bits;
+                }
+                long[] words = new long[1024];
+                for (int i = 0; i < cardinality; i++) {
+                    words[array[i] >>> 6] |= 1L << array[i];
+                }
+                return words;
+            }
+
+            Chunk toBits() {
+                Chunk c = new Chunk();
+                c.bits = words();
+                c.cardinality = cardinality;
+                return c;
+            }
+
+            Chunk toArray() {
+                Chunk c = new Chunk();
+                c.array = new char[Math.max(cardinality, 4)];
+                forEach(0, v -> c.array[c.cardinality++] = (char) v);
+                return c;
+            }
+
+            void forEach(int base, IntConsumer action) {
+                if (bits == null) {
+                    for (int i = 0; i < cardinality; i++) {
+                        action.accept(base | array[i]);
+                    }
+                    return;
+                }
+                for (int w = 0; w < bits.length; w++) {
+                    for (long word = bits[w]; word != 0; word &= word - 1) {
+                        action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                    }
+                }
+            }
+
+            Chunk copy() {
+                Chunk c = new Chunk();
+                c.array = array == null ? null : array.clone();
+                c.bits = bits == null ? null : bits.clone();
+                c.cardinality = cardinality;
+                return c;
+            }
+
+            long sizeInBytes() {
+                return bits != null ? bits.length * 8L : array.length * 2L;
+            }
+        }
+
+        private char[] keys = new char[4];
+        private Chunk[] chunks = new Chunk[4];
+        private int count;
+
+        private int find(char key) {
+            if (count > 0 && keys[count - 1] == key) {
+                return count - 1;                         // newest chunk: the append case
+            }
+            return Arrays.binarySearch(keys, 0, count, key);
+        }
+
+        private void insertChunk(int pos, char key, Chunk chunk) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count << 1);
+                chunks = Arrays.copyOf(chunks, count << 1);
+            }
+            System.arraycopy(keys, pos, keys, pos + 1, count - pos);
+            System.arraycopy(chunks, pos, chunks, pos + 1, count - pos);
+            keys[pos] = key;
+            chunks[pos] = chunk;
+            count++;
+        }
+
+        public boolean add(int row) {
+            char key = (char) (row >>> 16);
+            int pos = find(key);
+            if (pos < 0) {
+                pos = -pos - 1;
+                insertChunk(pos, key, Chunk.ofArray(new char[4], 0));
+            }
+            return chunks[pos].add((char) row);
+        }
+
+        public boolean remove(int row) {
+            int pos = find((char) (row >>> 16));
+            if (pos < 0 || !chunks[pos].remove((char) row)) {
+                return false;
+            }
+            if (chunks[pos].n() == 0) {
+                System.arraycopy(keys, pos + 1, keys, pos, count - pos - 1);
+                System.arraycopy(chunks, pos + 1, chunks, pos, count - pos - 1);
+                chunks[--count] = null;
+            }
+            return true;
+        }
+
+        public boolean contains(int row) {
+            int pos = find((char) (row >>> 16));
+            return pos >= 0 && chunks[pos].contains((char) row);
+        }
+
+        public long cardinality() {
+            long n = 0;
+            for (int i = 0; i < count; i++) {
+                n += chunks[i].n();
+            }
+            return n;
+        }
+
+        /** Calls 'action' with every row, ascending. */
+        public void forEach(IntConsumer action) {
+            for (int i = 0; i < count; i++) {
+                chunks[i].forEach(keys[i] << 16, action);
+            }
+        }
+
+        public long sizeInBytes() {
+            long bytes = count * 2L;
+            for (int i = 0; i < count; i++) {
+                bytes += chunks[i].sizeInBytes();
+            }
+            return bytes;
+        }
+
+        public RowBitmap copy() {
+            RowBitmap r = new RowBitmap();
+            r.keys = Arrays.copyOf(keys, Math.max(count, 4));
+            r.chunks = new Chunk[r.keys.length];
+            for (int i = 0; i < count; i++) {
+                r.chunks[i] = chunks[i].copy();
+            }
+            r.count = count;
+            return r;
+        }
+
+        private void appendChunk(char key, Chunk chunk) {
+            if (chunk.n() > 0) {
+                insertChunk(count, key, chunk);
+            }
+        }
+
+        // ==========================================
+        // 1b. SET ALGEBRA (chunk by chunk)
+        // ==========================================
+
+        public static RowBitmap and(RowBitmap a, RowBitmap b) {
+            RowBitmap out = new RowBitmap();
+            int i = 0;
+            int j = 0;
+            while (i < a.count && j < b.count) {
+                if (a.keys[i] < b.keys[j]) {
+                    i++;
+                } else if (a.keys[i] > b.keys[j]) {
+                    j++;
+                } else {
+                    out.appendChunk(a.keys[i], and(a.chunks[i++], b.chunks[j++]));
+                }
+            }
+            return out;
+        }
+
+        private static Chunk and(Chunk x, Chunk y) {
+            if (x.bits != null && y.bits != null) {
+                long[] words = new long[1024];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = x.bits[w] & y.bits[w];
+                }
+                return Chunk.ofBits(words);
+            }
+            Chunk small = x.bits == null ? x : y;       // probe the array side into the other
+            Chunk other = small == x ? y : x;
+            char[] values = new char[Math.max(small.n(), 4)];
+            int n = 0;
+            for (int k = 0; k < small.n(); k++) {
+                if (other.contains(small.array[k])) {
+                    values[n++] = small.array[k];
+                }
+            }
+            return Chunk.ofArray(values, n);
+        }
+
+        public static RowBitmap or(RowBitmap a, RowBitmap b) {
+            RowBitmap out = new RowBitmap();
+            int i = 0;
+            int j = 0;
+            while (i < a.count || j < b.count) {
+                if (j == b.count || (i < a.count && a.keys[i] < b.keys[j])) {
+                    out.appendChunk(a.keys[i], a.chunks[i++].copy());
+                } else if (i == a.count || a.keys[i] > b.keys[j]) {
+                    out.appendChunk(b.keys[j], b.chunks[j++].copy());
+                } else {
+                    out.appendChunk(a.keys[i], or(a.chunks[i++], b.chunks[j++]));
+                }
+            }
+            return out;
+        }
+
+        private static Chunk or(Chunk x, Chunk y) {
+            if (x.bits == null && y.bits == null && x.n() + y.n() <= ARRAY_MAX) {
+                char[] values = new char[Math.max(x.n() + y.n(), 4)];
+                int n = 0;
+                int i = 0;
+                int j = 0;
+                while (i < x.n() || j < y.n()) {
+                    char v = j == y.n() || (i < x.n() && x.array[i] <= y.array[j]) ? x.array[i] : y.array[j];
+                    if (i < x.n() && x.array[i] == v) {
+                        i++;
+                    }
+                    if (j < y.n() && y.array[j] == v) {
+                        j++;
+                    }
+                    values[n++] = v;
+                }
+                return Chunk.ofArray(values, n);
+            }
+            long[] words = x.words().clone();
+            long[] other = y.words();
+            for (int w = 0; w < words.length; w++) {
+                words[w] |= other[w];
+            }
+            return Chunk.ofBits(words);
+        }
+
+        /** Rows in 'a' that are not in 'b'. */
+        public static RowBitmap andNot(RowBitmap a, RowBitmap b) {
+            RowBitmap out = new RowBitmap();
+            int j = 0;
+            for (int i = 0; i < a.count; i++) {
+                while (j < b.count && b.keys[j] < a.keys[i]) {
+                    j++;
+                }
+                if (j == b.count || b.keys[j] != a.keys[i]) {
+                    out.appendChunk(a.keys[i], a.chunks[i].copy());
+                } else if (a.chunks[i].bits != null) {
+                    long[] words = a.chunks[i].bits.clone();
+                    long[] other = b.chunks[j].words();
+                    for (int w = 0; w < words.length; w++) {
+                        words[w] &= ~other[w];
+                    }
+                    out.appendChunk(a.keys[i], Chunk.ofBits(words));
+                } else {
+                    Chunk x = a.chunks[i];
+                    char[] values = new char[Math.max(x.n(), 4)];
+                    int n = 0;
+                    for (int k = 0; k < x.n(); k++) {
+                        if (!b.chunks[j].contains(x.array[k])) {
+                            values[n++] = x.array[k];
+                        }
+                    }
+                    out.appendChunk(a.keys[i], Chunk.ofArray(values, n));
+                }
+            }
+            return out;
+        }
+    }
+
+    // ==========================================
+    // 2. INDEX MAINTENANCE (RowListener)
+    // ==========================================
+
+    private final RowBitmap[] byType = new RowBitmap[LambdasDemo.TxnType.values().length];
+    private final RowBitmap[] byStatus = new RowBitmap[LambdasDemo.TxnStatus.values().length];
+
+    public BitmapIndex() {
+        for (int i = 0; i < byType.length; i++) {
+            byType[i] = new RowBitmap();
+        }
+        for (int i = 0; i < byStatus.length; i++) {
+            byStatus[i] = new RowBitmap();
+        }
+    }
+
+    /** Creates the index, loads the rows already in the store and keeps it in sync from then on. */
+    public static BitmapIndex attach(TransactionStore store) {
+        BitmapIndex index = new BitmapIndex();
+        for (int row = 0; row < store.size(); row++) {
+            index.onAppend(store, row);
+        }
+        store.addListener(index);
+        return index;
+    }
+
+    @Override
+    public synchronized void onAppend(TransactionStore store, int row) {
+        byType[store.type(row).ordinal()].add(row);
+        byStatus[store.status(row).ordinal()].add(row);
+    }
+
+    @Override
+    public synchronized void onStatusChange(TransactionStore store, int row,
+                                            LambdasDemo.TxnStatus from, LambdasDemo.TxnStatus to) {
+        int current = store.status(row).ordinal();
+        for (int s = 0; s < byStatus.length; s++) {
+            if (s == current) {
+                byStatus[s].add(row);
+            } else {
+                byStatus[s].remove(row);
+            }
+        }
+    }
+
+    // ==========================================
+    // 3. QUERIES
+    // ==========================================
+
+    public synchronized RowBitmap rows(LambdasDemo.TxnType type) {
+        return byType[type.ordinal()].copy();
+    }
+
+    public synchronized RowBitmap rows(LambdasDemo.TxnStatus status) {
+        return byStatus[status.ordinal()].copy();
+    }
+
+    /** Rows whose type is any of 'types' AND whose status is any of 'statuses'. */
+    public synchronized RowBitmap select(Set<LambdasDemo.TxnType> types, Set<LambdasDemo.TxnStatus> statuses) {
+        RowBitmap typeRows = new RowBitmap();
+        for (LambdasDemo.TxnType type : types) {
+            typeRows = RowBitmap.or(typeRows, byType[type.ordinal()]);
+        }
+        RowBitmap statusRows = new RowBitmap();
+        for (LambdasDemo.TxnStatus status : statuses) {
+            statusRows = RowBitmap.or(statusRows, byStatus[status.ordinal()]);
+        }
+        return RowBitmap.and(typeRows, statusRows);
+    }
+
+    public synchronized long sizeInBytes() {
+        long bytes = 0;
+        for (RowBitmap b : byType) {
+            bytes += b.sizeInBytes();
+        }
+        for (RowBitmap b : byStatus) {
+            bytes += b.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> BITMAP SECONDARY INDEXES <<<\n");
+
+        AccountSymbolTable accounts = new AccountSymbolTable();
+        TransactionStore store = new TransactionStore(accounts, 1 << 22);
+        store.appendAll(LambdasDemo.samplePool());
+        BitmapIndex index = attach(store);
+
+        for (int a = 0; a < 1_000; a++) {
+            accounts.intern("ACC_" + a);
+        }
+        Random rnd = new Random(19);
+        LambdasDemo.TxnType[] types = LambdasDemo.TxnType.values();
+        for (int i = 0; i < 4_000_000; i++) {
+            store.append(1_000 + i, rnd.nextInt(1_000), 100 + rnd.nextInt(2_000_000),
+                    types[rnd.nextInt(types.length)], 1_705_309_200_000L + i);
+        }
+        store.flagAbove(1_950_000L, LambdasDemo.TxnType.DEBIT);
+        store.flagAbove(1_990_000L, LambdasDemo.TxnType.TRANSFER);
+        for (int row = 0; row < store.size(); row += 1_000) {
+            store.compareAndSetStatus(row, LambdasDemo.TxnStatus.PENDING, LambdasDemo.TxnStatus.PROCESSED);
+        }
+        System.out.printf("%,d rows indexed in %,d KB of bitmaps%n", store.size(), index.sizeInBytes() >> 10);
+
+        // "All FLAGGED DEBITs": bitmap AND vs a full predicate scan (best of 5, after warm-up)
+        RowBitmap flaggedDebits = null;
+        long scanned = 0;
+        long bitmapNanos = Long.MAX_VALUE;
+        long scanNanos = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long t0 = System.nanoTime();
+            flaggedDebits = RowBitmap.and(index.rows(LambdasDemo.TxnType.DEBIT), index.rows(LambdasDemo.TxnStatus.FLAGGED));
+            bitmapNanos = Math.min(bitmapNanos, System.nanoTime() - t0);
+
+            t0 = System.nanoTime();
+            scanned = 0;
+            for (int row = 0; row < store.size(); row++) {
+                if (store.type(row) == LambdasDemo.TxnType.DEBIT && store.status(row) == LambdasDemo.TxnStatus.FLAGGED) {
+                    scanned++;
+                }
+            }
+            scanNanos = Math.min(scanNanos, System.nanoTime() - t0);
+        }
+        long[] volume = new long[1];
+        flaggedDebits.forEach(row -> volume[0] = Money.add(volume[0], store.amountCents(row)));
+        System.out.printf("FLAGGED DEBITs: %,d rows ($ %s) in %.2f ms via bitmaps vs %,d in %.2f ms by scan%n",
+                flaggedDebits.cardinality(), Money.format(volume[0]), bitmapNanos / 1e6, scanned, scanNanos / 1e6);
+
+        // Dashboard: flagged or processed transfers/debits, excluding the original demo rows
+        RowBitmap dashboard = index.select(EnumSet.of(LambdasDemo.TxnType.DEBIT, LambdasDemo.TxnType.TRANSFER),
+                EnumSet.of(LambdasDemo.TxnStatus.FLAGGED, LambdasDemo.TxnStatus.PROCESSED));
+        RowBitmap sample = new RowBitmap();
+        for (int row = 0; row < 8; row++) {
+            sample.add(row);
+        }
+        System.out.printf("(DEBIT|TRANSFER) & (FLAGGED|PROCESSED): %,d rows, %,d without the sample pool%n",
+                dashboard.cardinality(), RowBitmap.andNot(dashboard, sample).cardinality());
+        System.out.println("TXN_108 (row 7) in FLAGGED bitmap: " + index.rows(LambdasDemo.TxnStatus.FLAGGED).contains(7));
+    }
+}
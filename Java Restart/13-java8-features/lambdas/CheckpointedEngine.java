@@ -0,0 +1,404 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * CHECKPOINT + TAIL LOG (Fast Restart)
+ * ------------------------------------
+ * Positions, fraud windows and the flagged set are all derived state: after a
+ * restart they could be rebuilt by replaying every transaction ever seen. This
+ * engine keeps that replay short:
+ *
+ * ✅ Every applied transaction is appended to a binary tail log (buffered,
+ *    written in chunks, forced to disk by sync()); a transaction that throws
+ *    while being applied is never logged, so it cannot break recovery
+ * ✅ checkpoint() writes the whole derived state as one compact binary file
+ *    (write to temp + atomic rename + directory fsync), then truncates the tail log
+ * ✅ open() maps the checkpoint read-only (FileChannel.map), restores the state
+ *    straight from the mapped bytes, then replays only the tail log
+ * ✅ Every record carries a sequence number, so a crash between the rename and
+ *    the truncate cannot apply an event twice, and a CRC32C over all its bytes,
+ *    so a flipped bit in any field (or a zero-filled block) is never applied;
+ *    replay stops at the first torn or corrupt record (short read, checksum
+ *    mismatch, bad type byte, sequence going backwards) and truncates it away
+ *
+ * Alerts are not re-emitted while the tail is replayed. Like TransactionStore,
+ * the engine is single-writer.
+ */
+public class CheckpointedEngine implements AutoCloseable {
+
+    private static final int MAGIC = 0x54584350;          // "TXCP"
+    private static final int VERSION = 1;
+    private static final String CHECKPOINT = "engine.checkpoint";
+    private static final String TAIL = "engine.tail";
+    // seq + txnId + cents + time (8 each), type (1), account length (2); the account follows
+    private static final int RECORD_HEADER = 8 * 4 + 1 + 2;
+    // CRC32C of header + account, written after the account
+    private static final int RECORD_CRC = 4;
+
+    private final Path dir;
+    private final AccountSymbolTable accounts = new AccountSymbolTable();
+    private final StreamingFraudDetector detector;
+    private final Consumer<StreamingFraudDetector.Alert> alertSink;
+    private long[] positions = new long[64];
+    private long[] flagged = new long[64];
+    private int flaggedCount;
+    private long sequence;
+    private boolean replaying;
+
+    private final FileChannel tail;
+    private final ByteBuffer tailBuffer = ByteBuffer.allocateDirect(1 << 20);
+    private final CRC32C crc = new CRC32C();
+
+    private CheckpointedEngine(Path dir, StreamingFraudDetector.Limits limits,
+                               Consumer<StreamingFraudDetector.Alert> alertSink) throws IOException {
+        this.dir = dir;
+        this.alertSink = alertSink;
+        this.detector = new StreamingFraudDetector(accounts, limits, alert -> {
+            if (!replaying) {
+                this.alertSink.accept(alert);
+            }
+        });
+        Files.createDirectories(dir);
+        this.tail = FileChannel.open(dir.resolve(TAIL), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // ==========================================
+    // 1. APPLY (derived state first, then log)
+    // ==========================================
+
+    /**
+     * Applies the transaction, then logs it. The id must be canonical (see
+     * TransactionStore.parseTxnId), so the logged number restores the same id.
+     * If applying throws, nothing is logged
+     * and the sequence does not advance. If logging throws, memory is ahead of the
+     * log; reopen the engine to get back to what is on disk.
+     */
+    public void apply(LambdasDemo.Transaction t) throws IOException {
+        long txnId = TransactionStore.parseTxnId(t.getId());
+        long time = TransactionStore.toEpochMillis(t.getTimestamp());
+        byte[] account = t.getAccountId().getBytes(StandardCharsets.UTF_8);
+        update(txnId, accounts.intern(t.getAccountId()), t.getAmountCents(), t.getType(), time);
+        sequence++;
+        logRecord(sequence, txnId, account, t.getAmountCents(), t.getType(), time);
+    }
+
+    private void update(long txnId, int accountId, long cents, LambdasDemo.TxnType type, long time) {
+        if (accountId >= positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(accountId + 1, positions.length << 1));
+        }
+        // overflow throws here, before the detector or the position has changed
+        long position = Money.add(positions[accountId], type == LambdasDemo.TxnType.DEBIT ? -cents : cents);
+        boolean flag = detector.accept(txnId, accountId, cents, type, time);
+        positions[accountId] = position;
+        if (flag) {
+            if (flaggedCount == flagged.length) {
+                flagged = Arrays.copyOf(flagged, flaggedCount << 1);
+            }
+            flagged[flaggedCount++] = txnId;
+        }
+    }
+
+    // ==========================================
+    // 2. TAIL LOG
+    // ==========================================
+
+    private void logRecord(long seq, long txnId, byte[] account, long cents,
+                           LambdasDemo.TxnType type, long time) throws IOException {
+        if (tailBuffer.remaining() < RECORD_HEADER + account.length + RECORD_CRC) {
+            flushTail();
+        }
+        int start = tailBuffer.position();
+        tailBuffer.putLong(seq)
+                .putLong(txnId)
+                .putLong(cents)
+                .putLong(time)
+                .put((byte) type.ordinal())
+                .putShort((short) account.length)
+                .put(account);
+        tailBuffer.putInt(checksum(tailBuffer, start, tailBuffer.position()));
+    }
+
+    /** CRC32C of bytes [from, to) of 'buffer'; does not move its position. */
+    private int checksum(ByteBuffer buffer, int from, int to) {
+        crc.reset();
+        crc.update(buffer.duplicate().limit(to).position(from));
+        return (int) crc.getValue();
+    }
+
+    private void flushTail() throws IOException {
+        tailBuffer.flip();
+        while (tailBuffer.hasRemaining()) {
+            tail.write(tailBuffer, tail.size());
+        }
+        tailBuffer.clear();
+    }
+
+    /** Writes buffered tail records and forces them to disk; events applied before this survive a crash. */
+    public void sync() throws IOException {
+        flushTail();
+        tail.force(false);
+    }
+
+    /** Replays tail records newer than the checkpoint; returns how many were applied. */
+    private long replayTail(long checkpointSeq) throws IOException {
+        long size = tail.size();
+        if (size == 0) {
+            return 0;
+        }
+        LambdasDemo.TxnType[] types = LambdasDemo.TxnType.values();
+        MappedByteBuffer in = tail.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        byte[] name = new byte[256];
+        long replayed = 0;
+        long validEnd = 0;
+        long lastSeq = Long.MIN_VALUE;
+        replaying = true;
+        try {
+            while (in.remaining() >= RECORD_HEADER + RECORD_CRC) {
+                int start = in.position();
+                long seq = in.getLong();
+                long txnId = in.getLong();
+                long cents = in.getLong();
+                long time = in.getLong();
+                int ordinal = in.get();
+                int length = in.getShort() & 0xFFFF;
+                if (in.remaining() < length + RECORD_CRC) {
+                    break;                                   // torn record: keep what came before
+                }
+                in.position(in.position() + length);
+                if (in.getInt() != checksum(in, start, in.position() - RECORD_CRC)
+                        || ordinal < 0 || ordinal >= types.length || seq <= lastSeq) {
+                    break;                                   // corrupt record: verified before anything is applied
+                }
+                LambdasDemo.TxnType type = types[ordinal];
+                lastSeq = seq;
+                if (length > name.length) {
+                    name = new byte[length];
+                }
+                in.get(start + RECORD_HEADER, name, 0, length);
+                validEnd = in.position();
+                if (seq <= checkpointSeq) {
+                    continue;                                // already in the checkpoint
+                }
+                sequence = seq;
+                update(txnId, accounts.intern(new String(name, 0, length, StandardCharsets.UTF_8)), cents, type, time);
+                replayed++;
+            }
+        } finally {
+            replaying = false;
+        }
+        tail.truncate(validEnd);
+        return replayed;
+    }
+
+    // ==========================================
+    // 3. CHECKPOINT (write + memory-mapped restore)
+    // ==========================================
+
+    /** Writes the derived state, atomically replaces the previous checkpoint and empties the tail log. */
+    public void checkpoint() throws IOException {
+        sync();
+        Path temp = dir.resolve(CHECKPOINT + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+            int accountCount = accounts.size();
+            out.writeInt(accountCount);
+            for (int id = 0; id < accountCount; id++) {
+                byte[] name = accounts.name(id).getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeLong(id < positions.length ? positions[id] : 0L);
+            }
+            out.writeInt(flaggedCount);
+            for (int i = 0; i < flaggedCount; i++) {
+                out.writeLong(flagged[i]);
+            }
+            detector.writeState(out);
+            out.flush();
+            file.getChannel().force(true);
+        }
+        Files.move(temp, dir.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(dir);     // make the rename durable before the tail it replaces is dropped
+        tail.truncate(0);
+    }
+
+    /** Forces a directory entry change (rename) to disk; skipped where directories cannot be opened (Windows). */
+    private static void syncDirectory(Path dir) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /** Restores state from the mapped checkpoint; returns the sequence number it covers. */
+    private long restoreCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " checkpoint: " + file);
+            }
+            long seq = in.getLong();
+            int accountCount = in.getInt();
+            positions = new long[Math.max(64, accountCount)];
+            byte[] name = new byte[256];
+            for (int id = 0; id < accountCount; id++) {
+                int length = in.getShort() & 0xFFFF;
+                if (length > name.length) {
+                    name = new byte[length];
+                }
+                in.get(name, 0, length);
+                if (accounts.intern(new String(name, 0, length, StandardCharsets.UTF_8)) != id) {
+                    throw new IOException("Checkpoint account table is out of order at id " + id);
+                }
+                positions[id] = in.getLong();
+            }
+            flaggedCount = in.getInt();
+            flagged = new long[Math.max(64, flaggedCount)];
+            in.asLongBuffer().get(flagged, 0, flaggedCount);
+            in.position(in.position() + flaggedCount * Long.BYTES);
+            detector.readState(in);
+            sequence = seq;
+            return seq;
+        }
+    }
+
+    /** Opens (or recovers) the engine stored in 'dir': checkpoint first, then the tail. */
+    public static CheckpointedEngine open(Path dir, StreamingFraudDetector.Limits limits,
+                                          Consumer<StreamingFraudDetector.Alert> alertSink) throws IOException {
+        CheckpointedEngine engine = new CheckpointedEngine(dir, limits, alertSink);
+        try {
+            engine.replayTail(engine.restoreCheckpoint());
+        } catch (IOException | RuntimeException e) {
+            engine.tail.close();
+            throw e;
+        }
+        return engine;
+    }
+
+    // ==========================================
+    // 4. STATE
+    // ==========================================
+
+    public long positionCents(String account) {
+        int id = accounts.idOf(account);
+        return id >= 0 && id < positions.length ? positions[id] : 0L;
+    }
+
+    public long sequence() { return sequence; }
+    public int flaggedCount() { return flaggedCount; }
+    public long alertCount() { return detector.alertCount(); }
+    public AccountSymbolTable accounts() { return accounts; }
+
+    /** Flushes the tail log; does not checkpoint (a restart replays the tail). */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            tail.close();
+        }
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(">>> CHECKPOINT + TAIL LOG <<<\n");
+
+        Path dir = Files.createTempDirectory("engine-");
+        List<LambdasDemo.Transaction> feed = new ArrayList<>(LambdasDemo.samplePool());
+        Random rnd = new Random(15);
+        LambdasDemo.TxnType[] types = LambdasDemo.TxnType.values();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 15, 9, 0);
+        for (int i = 0; i < 1_000_000; i++) {
+            feed.add(new LambdasDemo.Transaction("TXN_" + (1_000 + i), "ACC_" + rnd.nextInt(5_000),
+                    1 + rnd.nextInt(20_000), types[rnd.nextInt(types.length)], start.plusSeconds(i / 10)));
+        }
+
+        long[] expected = new long[2];
+        try (CheckpointedEngine engine = open(dir, new StreamingFraudDetector.Limits(), alert -> { })) {
+            for (int i = 0; i < feed.size(); i++) {
+                engine.apply(feed.get(i));
+                if (i == 950_000) {
+                    engine.checkpoint();
+                }
+            }
+            expected[0] = engine.positionCents("ACC_X");
+            expected[1] = engine.flaggedCount();
+            System.out.println("Applied " + engine.sequence() + " txns, checkpoint at 950,001, then \"crash\"");
+        }
+        System.out.println("Checkpoint " + (Files.size(dir.resolve(CHECKPOINT)) >> 10) + " KB, tail "
+                + (Files.size(dir.resolve(TAIL)) >> 10) + " KB");
+
+        long t0 = System.nanoTime();
+        try (CheckpointedEngine recovered = open(dir, new StreamingFraudDetector.Limits(), alert -> { })) {
+            double millis = (System.nanoTime() - t0) / 1e6;
+            System.out.printf("Recovered to seq %,d in %.1f ms%n", recovered.sequence(), millis);
+            System.out.println("ACC_X position $ " + Money.format(recovered.positionCents("ACC_X"))
+                    + ", flagged " + recovered.flaggedCount());
+            System.out.println("Matches pre-crash state: " + (recovered.positionCents("ACC_X") == expected[0]
+                    && recovered.flaggedCount() == expected[1]));
+        }
+
+        // Corrupt the tail: one flipped bit in the second record's amount, then a zero-filled first record
+        long checkpointSeq;
+        try (FileChannel file = FileChannel.open(dir.resolve(TAIL), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            file.read(header, 0);
+            checkpointSeq = header.getLong(0) - 1;
+            long second = RECORD_HEADER + (header.getShort(RECORD_HEADER - 2) & 0xFFFF) + RECORD_CRC;
+            ByteBuffer cents = ByteBuffer.allocate(1);
+            file.read(cents, second + 16);
+            cents.put(0, (byte) (cents.get(0) ^ 0x04)).rewind();
+            file.write(cents, second + 16);
+        }
+        try (CheckpointedEngine recovered = open(dir, new StreamingFraudDetector.Limits(), alert -> { })) {
+            System.out.println("Bit flip in record 2: replay stopped after record 1: "
+                    + (recovered.sequence() == checkpointSeq + 1));
+        }
+        try (FileChannel file = FileChannel.open(dir.resolve(TAIL), StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.allocate(256), 0);
+        }
+        try (CheckpointedEngine recovered = open(dir, new StreamingFraudDetector.Limits(), alert -> { })) {
+            System.out.println("Zero-filled tail ignored: " + (recovered.sequence() == checkpointSeq));
+        }
+
+        // Without a checkpoint the whole history has to be replayed
+        Path scratch = Files.createTempDirectory("engine-full-");
+        long t1 = System.nanoTime();
+        try (CheckpointedEngine full = open(scratch, new StreamingFraudDetector.Limits(), alert -> { })) {
+            for (LambdasDemo.Transaction t : feed) {
+                full.apply(t);
+            }
+        }
+        System.out.printf("Full replay of %,d txns: %.1f ms%n", feed.size(), (System.nanoTime() - t1) / 1e6);
+
+        for (Path d : new Path[] {dir, scratch}) {
+            for (String name : new String[] {CHECKPOINT, TAIL}) {
+                Files.deleteIfExists(d.resolve(name));
+            }
+            Files.deleteIfExists(d);
+        }
+    }
+}
@@ -0,0 +1,511 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * MEMORY-MAPPED CSV TRANSACTION LOADER
+ * ------------------------------------
+ * Bulk-loads transaction files straight into a TransactionStore:
+ *
+ *   TXN_101,ACC_A,5000.00,TRANSFER,1705309200000[,FLAGGED[,ACC_B]]
+ *   id     ,account,amount,type    ,epoch millis (UTC)[,status[,counterparty]]
+ *
+ * ✅ The file is memory-mapped (FileChannel.map), no read() copies
+ * ✅ Fields are parsed straight from bytes: amounts to long cents (HALF_EVEN
+ *    beyond 2 decimals), types by byte comparison, ids to their numeric part
+ *    (ids must be canonical as TransactionStore requires: TXN_007 is an error)
+ * ✅ No String or BigDecimal per field; an account name becomes a String only
+ *    the first time a worker sees it
+ * ✅ Large files are cut at line boundaries into ranges parsed on separate cores,
+ *    then appended to the target store in file order
+ *
+ * The status and counterparty columns are optional (rows default to PENDING and
+ * no counterparty; an empty counterparty field means none), so files exported
+ * by CsvReportWriter load back unchanged. Lines that do not start with "TXN_"
+ * (e.g. a header) are skipped.
+ * Both \n and \r\n line endings are accepted. Fields may be quoted as in RFC 4180
+ * (commas, line breaks and doubled quotes inside quotes); parallel ranges are cut
+ * only where a new line starts with "TXN_<digits>,", so a quoted account name must
+ * not contain a line break followed by that pattern.
+ */
+public class CsvTransactionLoader {
+
+    private static final long MAX_RANGE = 256L * 1024 * 1024;   // keep each mapping well under 2 GB
+    private static final byte[] PREFIX = TransactionStore.TXN_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final LambdasDemo.TxnType[] TYPES = LambdasDemo.TxnType.values();
+    private static final LambdasDemo.TxnStatus[] STATUSES = LambdasDemo.TxnStatus.values();
+    private static final byte[][] TYPE_NAMES = names(TYPES);
+    private static final byte[][] STATUS_NAMES = names(STATUSES);
+
+    private static byte[][] names(Enum<?>[] values) {
+        byte[][] names = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+        return names;
+    }
+
+    private final int parallelism;
+
+    public CsvTransactionLoader(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // ==========================================
+    // 1. SPLITTING + PARALLEL PARSE
+    // ==========================================
+
+    /** Loads the whole file into the store and returns the number of rows appended. */
+    public int load(Path file, TransactionStore target) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = splitAtLines(channel);
+            int ranges = bounds.length - 1;
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, ranges));
+            try {
+                List<Future<TransactionStore>> parts = new ArrayList<>(ranges);
+                for (int i = 0; i < ranges; i++) {
+                    long from = bounds[i];
+                    long to = bounds[i + 1];
+                    parts.add(pool.submit(() -> parseRange(channel, from, to, target.accounts())));
+                }
+                int loaded = 0;
+                for (Future<TransactionStore> part : parts) {
+                    TransactionStore rows = part.get();
+                    target.appendAll(rows);
+                    loaded += rows.size();
+                }
+                return loaded;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /** Range boundaries (byte offsets) that each start at the beginning of a line. */
+    private long[] splitAtLines(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long target = Math.max(1, Math.min(MAX_RANGE, (size + parallelism - 1) / parallelism));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long pos = 0;
+        ByteBuffer one = ByteBuffer.allocate(1);
+        while (pos + target < size) {
+            long cut = pos + target;
+            // advance to just after the next newline
+            while (cut < size) {
+                one.clear();
+                channel.read(one, cut++);
+                if (one.get(0) == '\n' && startsRecord(channel, cut)) {
+                    break;      // a line break inside a quoted field is not followed by a record
+                }
+            }
+            if (cut >= size) {
+                break;
+            }
+            bounds.add(cut);
+            pos = cut;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /** True if the bytes at 'pos' look like the start of a record: TXN_<digits>, */
+    private static boolean startsRecord(FileChannel channel, long pos) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(PREFIX.length + 21);
+        channel.read(head, pos);
+        int n = head.position();
+        for (int i = 0; i < PREFIX.length; i++) {
+            if (i >= n || head.get(i) != PREFIX[i]) {
+                return false;
+            }
+        }
+        int i = PREFIX.length;
+        while (i < n && head.get(i) >= '0' && head.get(i) <= '9') {
+            i++;
+        }
+        return i > PREFIX.length && (i == n || head.get(i) == ',');
+    }
+
+    // ==========================================
+    // 2. BYTE-LEVEL PARSER
+    // ==========================================
+
+    private static TransactionStore parseRange(FileChannel channel, long from, long to,
+                                               AccountSymbolTable accounts) throws IOException {
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        TransactionStore rows = new TransactionStore(accounts, (int) Math.min(Integer.MAX_VALUE - 8, (to - from) / 40 + 16));
+        AccountCache cache = new AccountCache(accounts);
+        int limit = buf.limit();
+        int p = 0;
+        while (p < limit) {
+            int lineStart = p;
+            int lineEnd = p;
+            boolean quoted = false;
+            while (lineEnd < limit) {
+                byte b = buf.get(lineEnd);
+                if (b == '"') {
+                    quoted = !quoted;       // "" inside a quoted field toggles twice
+                } else if (b == '\n' && !quoted) {
+                    break;
+                }
+                lineEnd++;
+            }
+            int end = lineEnd > lineStart && buf.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            p = lineEnd + 1;
+            if (end == lineStart || !startsWith(buf, lineStart, end, PREFIX)) {
+                continue;
+            }
+            try {
+                parseLine(buf, lineStart, end, rows, cache);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Malformed CSV line at byte offset " + (from + lineStart)
+                        + ": " + text(buf, lineStart, end) + " (" + e.getMessage() + ")", e);
+            }
+        }
+        return rows;
+    }
+
+    /** The line as text, only for error messages. */
+    private static String text(MappedByteBuffer buf, int from, int end) {
+        byte[] bytes = new byte[Math.min(end - from, 200)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void parseLine(MappedByteBuffer buf, int start, int end, TransactionStore rows, AccountCache cache) {
+        int c1 = indexOf(buf, start, end);
+        int c2 = indexOf(buf, c1 + 1, end);
+        int c3 = indexOf(buf, c2 + 1, end);
+        int c4 = indexOf(buf, c3 + 1, end);
+
+        long txnId = parseTxnId(buf, start + PREFIX.length, c1);
+        int account = account(buf, c1 + 1, c2, cache);
+        int q = quoted(buf, c2 + 1, c3);
+        long cents = parseCents(buf, c2 + 1 + q, c3 - q);
+        q = quoted(buf, c3 + 1, c4);
+        LambdasDemo.TxnType type = TYPES[match(buf, c3 + 1 + q, c4 - q, TYPE_NAMES, "transaction type")];
+        int c5 = indexOfOrEnd(buf, c4 + 1, end);
+        q = quoted(buf, c4 + 1, c5);
+        long epochMillis = parseLong(buf, c4 + 1 + q, c5 - q);
+        LambdasDemo.TxnStatus status = LambdasDemo.TxnStatus.PENDING;
+        int counterparty = -1;
+        if (c5 < end) {
+            int c6 = indexOfOrEnd(buf, c5 + 1, end);
+            q = quoted(buf, c5 + 1, c6);
+            status = STATUSES[match(buf, c5 + 1 + q, c6 - q, STATUS_NAMES, "status")];
+            if (c6 + 1 < end) {
+                counterparty = account(buf, c6 + 1, end, cache);
+            }
+        }
+        int row = rows.append(txnId, account, counterparty, cents, type, epochMillis);
+        if (status != LambdasDemo.TxnStatus.PENDING) {
+            rows.setStatus(row, status);
+        }
+    }
+
+    /** The next comma outside quotes, or 'end'. */
+    private static int indexOfOrEnd(MappedByteBuffer buf, int from, int end) {
+        boolean quoted = false;
+        for (int i = from; i < end; i++) {
+            byte b = buf.get(i);
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == ',' && !quoted) {
+                return i;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        return end;
+    }
+
+    private static int indexOf(MappedByteBuffer buf, int from, int end) {
+        int comma = indexOfOrEnd(buf, from, end);
+        if (comma == end) {
+            throw new IllegalArgumentException("Expected at least 5 comma-separated fields");
+        }
+        return comma;
+    }
+
+    /** 1 if [from, end) is a quoted field (content is [from + 1, end - 1)), else 0. */
+    private static int quoted(MappedByteBuffer buf, int from, int end) {
+        return end - from >= 2 && buf.get(from) == '"' && buf.get(end - 1) == '"' ? 1 : 0;
+    }
+
+    /** Account id for an unquoted or quoted field; only a field with "" escapes is unescaped into a String. */
+    private static int account(MappedByteBuffer buf, int from, int end, AccountCache cache) {
+        if (quoted(buf, from, end) == 0) {
+            return cache.lookup(buf, from, end);
+        }
+        from++;
+        end--;
+        if (indexOfByte(buf, '"', from, end) < 0) {
+            return cache.lookup(buf, from, end);
+        }
+        byte[] name = new byte[end - from];
+        int n = 0;
+        for (int i = from; i < end; i++) {
+            byte b = buf.get(i);
+            name[n++] = b;
+            if (b == '"') {
+                i++;                        // skip the second quote of ""
+            }
+        }
+        return cache.accounts.intern(new String(name, 0, n, StandardCharsets.UTF_8));
+    }
+
+    private static int indexOfByte(MappedByteBuffer buf, char ch, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buf.get(i) == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(MappedByteBuffer buf, int from, int end, byte[] prefix) {
+        if (end - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf.get(from + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Same contract as TransactionStore.parseTxnId: no sign, no leading zeros (TXN_007 is not TXN_7). */
+    private static long parseTxnId(MappedByteBuffer buf, int from, int end) {
+        if (from < end && (buf.get(from) == '-' || (buf.get(from) == '0' && end - from > 1))) {
+            throw new IllegalArgumentException("Transaction id must have no sign or leading zeros");
+        }
+        return parseLong(buf, from, end);
+    }
+
+    static long parseLong(MappedByteBuffer buf, int from, int end) {
+        if (from >= end) {
+            throw new IllegalArgumentException("Empty number");
+        }
+        boolean negative = buf.get(from) == '-';
+        if (negative && from + 1 == end) {
+            throw new IllegalArgumentException("Sign without digits");
+        }
+        long value = 0;
+        for (int i = negative ? from + 1 : from; i < end; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) {
+                throw new IllegalArgumentException("Not a digit: " + (char) buf.get(i));
+            }
+            value = Math.addExact(Math.multiplyExact(value, 10), d);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decimal amount to cents; digits beyond the second decimal are rounded HALF_EVEN.
+     * At least one digit is required: "", "-", "." and "-." are rejected, not read as 0.
+     */
+    static long parseCents(MappedByteBuffer buf, int from, int end) {
+        boolean negative = from < end && buf.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        long cents = 0;
+        int decimals = -1;          // -1 until the '.' is seen
+        int roundDigit = -1;        // first digit beyond 2 decimals
+        boolean sticky = false;     // any non-zero digit after roundDigit
+        boolean digits = false;
+        for (; i < end; i++) {
+            byte b = buf.get(i);
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            int d = b - '0';
+            if (d < 0 || d > 9) {
+                throw new IllegalArgumentException("Bad amount character: " + (char) b);
+            }
+            digits = true;
+            if (decimals < 0 || decimals < 2) {
+                cents = Math.addExact(Math.multiplyExact(cents, 10), d);
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (roundDigit < 0) {
+                roundDigit = d;
+            } else if (d != 0) {
+                sticky = true;
+            }
+        }
+        if (!digits) {
+            throw new IllegalArgumentException("Amount has no digits");
+        }
+        for (int pad = Math.max(decimals, 0); pad < 2; pad++) {
+            cents = Math.multiplyExact(cents, 10);
+        }
+        if (roundDigit > 5 || (roundDigit == 5 && (sticky || (cents & 1) == 1))) {
+            cents++;
+        }
+        return negative ? -cents : cents;
+    }
+
+    /** Index of the enum name equal to the bytes in [from, end). */
+    private static int match(MappedByteBuffer buf, int from, int end, byte[][] names, String what) {
+        outer:
+        for (int n = 0; n < names.length; n++) {
+            byte[] name = names[n];
+            if (name.length != end - from) {
+                continue;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (buf.get(from + i) != name[i]) {
+                    continue outer;
+                }
+            }
+            return n;
+        }
+        throw new IllegalArgumentException("Unknown " + what);
+    }
+
+    // ==========================================
+    // 3. PER-WORKER ACCOUNT CACHE (bytes -> id)
+    // ==========================================
+
+    /** Open-addressing table keyed by the account's bytes; only a miss creates a String. */
+    private static final class AccountCache {
+        private final AccountSymbolTable accounts;
+        private int[] hashes = new int[256];
+        private int[] ids = new int[256];
+        private byte[][] keys = new byte[256][];
+        private int size;
+
+        AccountCache(AccountSymbolTable accounts) {
+            this.accounts = accounts;
+        }
+
+        int lookup(MappedByteBuffer buf, int from, int end) {
+            int h = 1;
+            for (int i = from; i < end; i++) {
+                h = 31 * h + buf.get(i);
+            }
+            int mask = keys.length - 1;
+            for (int slot = mix(h) & mask; ; slot = (slot + 1) & mask) {
+                byte[] key = keys[slot];
+                if (key == null) {
+                    return insert(buf, from, end, h, slot);
+                }
+                if (hashes[slot] == h && matches(key, buf, from, end)) {
+                    return ids[slot];
+                }
+            }
+        }
+
+        private int insert(MappedByteBuffer buf, int from, int end, int h, int slot) {
+            byte[] key = new byte[end - from];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = buf.get(from + i);
+            }
+            int id = accounts.intern(new String(key, StandardCharsets.UTF_8));
+            keys[slot] = key;
+            hashes[slot] = h;
+            ids[slot] = id;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            byte[][] oldKeys = keys;
+            int[] oldHashes = hashes;
+            int[] oldIds = ids;
+            keys = new byte[oldKeys.length << 1][];
+            hashes = new int[keys.length];
+            ids = new int[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = mix(oldHashes[i]) & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    hashes[slot] = oldHashes[i];
+                    ids[slot] = oldIds[i];
+                }
+            }
+        }
+
+        private static boolean matches(byte[] key, MappedByteBuffer buf, int from, int end) {
+            if (key.length != end - from) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buf.get(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int mix(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(">>> MEMORY-MAPPED CSV LOADER <<<\n");
+
+        Path file = Files.createTempFile("txns-", ".csv");
+        int rows = 2_000_000;
+        Random rnd = new Random(3);
+        long start = 1_705_309_200_000L;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            out.write("id,account,amount,type,epochMillis\n");
+            for (int i = 0; i < rows; i++) {
+                out.write("TXN_" + (100 + i) + ",ACC_" + rnd.nextInt(5_000) + ","
+                        + rnd.nextInt(1_000_000) + "." + (10 + rnd.nextInt(90)) + ","
+                        + TYPES[rnd.nextInt(TYPES.length)] + "," + (start + i * 10L) + "\n");
+            }
+        }
+        long bytes = Files.size(file);
+
+        TransactionStore store = new TransactionStore(new AccountSymbolTable(), rows);
+        CsvTransactionLoader loader = new CsvTransactionLoader(Runtime.getRuntime().availableProcessors());
+        long t0 = System.nanoTime();
+        int loaded = loader.load(file, store);
+        double seconds = (System.nanoTime() - t0) / 1e9;
+
+        System.out.printf("Loaded %,d rows (%,d accounts) from %,d MB in %.3f s -> %,.0f rows/s, %.0f MB/s%n",
+                loaded, store.accountCount(), bytes >> 20, seconds, loaded / seconds, (bytes >> 20) / seconds);
+        System.out.println("First row : " + store.materialize(0));
+        System.out.println("Volume    : $ " + Money.format(store.totalVolumeCents()));
+        Files.deleteIfExists(file);
+    }
+}
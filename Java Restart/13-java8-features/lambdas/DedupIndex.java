@@ -0,0 +1,301 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * TRANSACTION ID DEDUPLICATION (Idempotent Ingest)
+ * ------------------------------------------------
+ * Upstream feeds resend transactions, and nothing in LambdasDemo can tell that
+ * TXN_101 was already processed. This index sits in front of ingestion and
+ * answers "first time seen?" for every txn id:
+ *
+ * ✅ Bloom filter fast path: a fresh id is usually rejected by a few bit tests
+ *    in one cache line, without touching the exact set
+ * ✅ Exact, compact id set: ids are grouped by their high 32 bits and the low bits
+ *    go into a BitmapIndex.RowBitmap, so sequence-style ids cost ~1 bit each when
+ *    dense and 2 bytes each when sparse (a HashSet<Long> costs ~50)
+ * ✅ Lossless for any id string: canonical "TXN_nnn" ids take the compact numeric
+ *    path, everything else (TXN_007, TXN_ABC, ...) is kept as the exact string, so
+ *    TXN_007 and TXN_7 stay distinct and a malformed id never throws mid-stream
+ * ✅ Time-based expiry by generations: the retention period is split into N
+ *    generations, each with its own Bloom filter and id set; when a generation
+ *    ages out it is dropped whole (no per-id timestamps, no sweeping)
+ *
+ * An id is remembered for at least 'retention' and at most retention plus one
+ * generation of feed time. Single-writer, like TransactionStore: put one index in
+ * front of each ingest thread or shard.
+ */
+public class DedupIndex {
+
+    // ==========================================
+    // 1. BLOOM FILTER
+    // ==========================================
+
+    /**
+     * Blocked Bloom filter: all probes of one key fall into the same 512-bit block
+     * (one 64-byte cache line), so a lookup costs one cache miss instead of seven.
+     */
+    static final class BloomFilter {
+        private static final int HASHES = 7;
+        private final long[] words;
+        private final int blockMask;
+
+        /** ~10 bits per expected id: about 1% false positives at capacity. */
+        BloomFilter(int expectedIds) {
+            long bits = Long.highestOneBit(Math.max(512L, expectedIds * 10L - 1)) << 1;
+            this.words = new long[(int) (bits >>> 6)];
+            this.blockMask = (int) (bits >>> 9) - 1;
+        }
+
+        void add(long hash) {
+            int base = ((int) hash & blockMask) << 3;
+            long h = hash >>> 32;
+            for (int i = 0; i < HASHES; i++, h = Long.rotateRight(h, 9) ^ hash) {
+                words[base + (int) ((h >>> 6) & 7)] |= 1L << h;
+            }
+        }
+
+        boolean mightContain(long hash) {
+            int base = ((int) hash & blockMask) << 3;
+            long h = hash >>> 32;
+            for (int i = 0; i < HASHES; i++, h = Long.rotateRight(h, 9) ^ hash) {
+                if ((words[base + (int) ((h >>> 6) & 7)] & (1L << h)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long sizeInBytes() { return words.length * 8L; }
+    }
+
+    // ==========================================
+    // 2. EXACT ID SET (high 32 bits -> RowBitmap of low 32 bits)
+    // ==========================================
+
+    static final class LongIdSet {
+        private final Map<Integer, BitmapIndex.RowBitmap> byHigh = new HashMap<>();
+        private int lastHigh;
+        private BitmapIndex.RowBitmap last;          // feeds are sequential: same high half almost always
+
+        private BitmapIndex.RowBitmap bitmap(long id, boolean create) {
+            int high = (int) (id >>> 32);
+            if (last != null && high == lastHigh) {
+                return last;
+            }
+            BitmapIndex.RowBitmap bitmap = create
+                    ? byHigh.computeIfAbsent(high, h -> new BitmapIndex.RowBitmap())
+                    : byHigh.get(high);
+            if (bitmap != null) {
+                lastHigh = high;
+                last = bitmap;
+            }
+            return bitmap;
+        }
+
+        boolean add(long id) { return bitmap(id, true).add((int) id); }
+
+        boolean contains(long id) {
+            BitmapIndex.RowBitmap bitmap = bitmap(id, false);
+            return bitmap != null && bitmap.contains((int) id);
+        }
+
+        long sizeInBytes() {
+            long bytes = 0;
+            for (BitmapIndex.RowBitmap b : byHigh.values()) {
+                bytes += b.sizeInBytes();
+            }
+            return bytes;
+        }
+    }
+
+    // ==========================================
+    // 3. GENERATIONS (expiry)
+    // ==========================================
+
+    private static final class Generation {
+        final long number;
+        final BloomFilter bloom;
+        final LongIdSet ids = new LongIdSet();
+        final Set<String> otherIds = new HashSet<>();      // ids that are not canonical TXN_nnn
+        long count;
+
+        Generation(long number, int expectedIds) {
+            this.number = number;
+            this.bloom = new BloomFilter(expectedIds);
+        }
+    }
+
+    private final long generationMillis;
+    private final int generations;
+    private final int expectedIdsPerGeneration;
+    private final ArrayDeque<Generation> live = new ArrayDeque<>();   // newest first
+    private long duplicates;
+    private long bloomFalsePositives;
+    private long checked;
+
+    public DedupIndex(Duration retention, int generations, int expectedIdsPerGeneration) {
+        if (generations < 1) {
+            throw new IllegalArgumentException("Need at least one generation: " + generations);
+        }
+        this.generations = generations;
+        this.generationMillis = Math.max(1, retention.toMillis() / generations);
+        this.expectedIdsPerGeneration = expectedIdsPerGeneration;
+    }
+
+    /** Current generation for the feed time; older generations beyond the retention are dropped. */
+    private Generation advance(long time) {
+        long number = Math.floorDiv(time, generationMillis);
+        Generation newest = live.peekFirst();
+        if (newest == null || number > newest.number) {
+            newest = new Generation(number, expectedIdsPerGeneration);
+            live.addFirst(newest);
+            while (live.peekLast().number <= number - generations - 1) {
+                live.removeLast();
+            }
+        }
+        return newest;      // late events are recorded in the newest generation
+    }
+
+    // ==========================================
+    // 4. DEDUP CHECK
+    // ==========================================
+
+    private static final String MAX_TXN_ID = TransactionStore.TXN_PREFIX + Long.MAX_VALUE;
+
+    /** Returns true the first time an id is seen inside the retention period, false for a resend. */
+    public boolean firstSeen(long txnId, long time) {
+        checked++;
+        Generation current = advance(time);
+        long hash = Sketches.mix(txnId);
+        for (Generation g : live) {
+            if (g.bloom.mightContain(hash)) {
+                if (g.ids.contains(txnId)) {
+                    duplicates++;
+                    return false;
+                }
+                bloomFalsePositives++;
+            }
+        }
+        current.bloom.add(hash);
+        current.ids.add(txnId);
+        current.count++;
+        return true;
+    }
+
+    /**
+     * Same check keyed on the id exactly as delivered. Canonical ids (see
+     * TransactionStore.parseTxnId) share the numeric set with firstSeen(long, long),
+     * so "TXN_7" and 7 are the same id; any other string is only equal to itself.
+     */
+    public boolean firstSeen(String id, long time) {
+        if (id == null) {
+            throw new IllegalArgumentException("Transaction id is null");
+        }
+        if (TransactionStore.isCanonicalTxnId(id) && (id.length() < MAX_TXN_ID.length()
+                || id.length() == MAX_TXN_ID.length() && id.compareTo(MAX_TXN_ID) <= 0)) {
+            return firstSeen(TransactionStore.parseTxnId(id), time);
+        }
+        checked++;
+        Generation current = advance(time);
+        long hash = Sketches.hash(id);
+        for (Generation g : live) {
+            if (g.bloom.mightContain(hash)) {
+                if (g.otherIds.contains(id)) {
+                    duplicates++;
+                    return false;
+                }
+                bloomFalsePositives++;
+            }
+        }
+        current.bloom.add(hash);
+        current.otherIds.add(id);
+        current.count++;
+        return true;
+    }
+
+    public boolean firstSeen(LambdasDemo.Transaction t) {
+        return firstSeen(t.getId(), TransactionStore.toEpochMillis(t.getTimestamp()));
+    }
+
+    /** Stream filter that drops resends: pool.stream().filter(dedup.asFilter()). Not for parallel streams. */
+    public Predicate<LambdasDemo.Transaction> asFilter() {
+        return this::firstSeen;
+    }
+
+    public long duplicates() { return duplicates; }
+    public long checked() { return checked; }
+    public long bloomFalsePositives() { return bloomFalsePositives; }
+
+    public long liveIds() {
+        long n = 0;
+        for (Generation g : live) {
+            n += g.count;
+        }
+        return n;
+    }
+
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Generation g : live) {
+            bytes += g.bloom.sizeInBytes() + g.ids.sizeInBytes();
+            for (String id : g.otherIds) {
+                bytes += 48 + 2L * id.length();                             // entry + String + chars, roughly
+            }
+        }
+        return bytes;
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> TRANSACTION ID DEDUPLICATION <<<\n");
+
+        // 1. The mock feed, delivered twice
+        DedupIndex dedup = new DedupIndex(Duration.ofHours(24), 4, 1 << 20);
+        List<LambdasDemo.Transaction> resent = new ArrayList<>(LambdasDemo.samplePool());
+        resent.addAll(resent.subList(0, 3));
+        long accepted = resent.stream().filter(dedup.asFilter()).count();
+        System.out.println("Mock feed: " + resent.size() + " deliveries, " + accepted + " accepted, "
+                + dedup.duplicates() + " resends dropped");
+
+        // 1b. Ids are compared exactly as delivered: zero-padded and non-numeric ids are distinct, never fatal
+        long now = TransactionStore.toEpochMillis(LambdasDemo.samplePool().get(0).getTimestamp());
+        String[] odd = {"TXN_7", "TXN_007", "TXN_07", "TXN_ABC", "txn_7", "TXN_7", "TXN_007", "TXN_ABC"};
+        StringBuilder verdicts = new StringBuilder();
+        for (String id : odd) {
+            verdicts.append(id).append(dedup.firstSeen(id, now) ? "=new " : "=resend ");
+        }
+        System.out.println("Odd ids: " + verdicts.toString().trim() + "\n");
+
+        // 2. 30M ids over ~2 days of feed time, 2% resent a little later
+        DedupIndex big = new DedupIndex(Duration.ofHours(24), 4, 4_000_000);
+        Random rnd = new Random(20);
+        long start = 1_705_276_800_000L;
+        int total = 30_000_000;
+        long[] recent = new long[4096];
+        long t0 = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long time = start + i * 6L;                              // ~2.1 days
+            long id = 10_000_000_000L + i;
+            big.firstSeen(id, time);
+            recent[i & 4095] = id;
+            if (rnd.nextInt(50) == 0) {
+                big.firstSeen(recent[rnd.nextInt(4096)], time);      // resend of a recent id
+            }
+        }
+        double nanosPerCheck = (System.nanoTime() - t0) / (double) big.checked();
+
+        System.out.printf("Checked %,d deliveries: %,d resends dropped, %.0f ns per check%n",
+                big.checked(), big.duplicates(), nanosPerCheck);
+        System.out.printf("Live ids %,d in %,d KB (%.2f bytes per id); Bloom false positives %,d%n",
+                big.liveIds(), big.sizeInBytes() >> 10, (double) big.sizeInBytes() / big.liveIds(),
+                big.bloomFalsePositives());
+
+        long endTime = start + (total - 1) * 6L;
+        System.out.println("First id after expiry counted as new again: " + big.firstSeen(10_000_000_000L, endTime)
+                + ", latest id still a duplicate: " + !big.firstSeen(10_000_000_000L + total - 1, endTime));
+    }
+}
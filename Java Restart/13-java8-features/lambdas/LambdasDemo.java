@@ -1,3 +1,5 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
@@ -15,6 +17,7 @@ import java.util.stream.Stream;
  * 3. Grouping and Partitioning of Financial Data
  * 4. Defensive coding with Optionals
  * 5. BigDecimal precision for currency
+ * 6. Lock-free (compare-and-set) status transitions for parallel processing
  */
 public class LambdasDemo {
 
@@ -23,39 +26,101 @@ public class LambdasDemo {
     // ==========================================
 
     enum TxnType { CREDIT, DEBIT, TRANSFER, FEE }
-    enum TxnStatus { PENDING, PROCESSED, FLAGGED, BLOCKED }
+
+    // Lifecycle: PENDING -> PROCESSED | FLAGGED | BLOCKED, and a FLAGGED review ends in PROCESSED | BLOCKED
+    enum TxnStatus {
+        PENDING, PROCESSED, FLAGGED, BLOCKED;
+
+        boolean canTransitionTo(TxnStatus next) {
+            switch (this) {
+                case PENDING: return next == PROCESSED || next == FLAGGED || next == BLOCKED;
+                case FLAGGED: return next == PROCESSED || next == BLOCKED;
+                default:      return false; // PROCESSED and BLOCKED are final
+            }
+        }
+    }
 
     static class Transaction {
         private final String id;
         private final String accountId;
+        private final String counterpartyId; // destination account of a TRANSFER, null otherwise
         private final BigDecimal amount;
+        private final long amountCents; // same value as Money minor units, for allocation-free hot paths
         private final TxnType type;
         private final LocalDateTime timestamp;
-        private TxnStatus status;
+        private volatile TxnStatus status; // only changed through compare-and-set (see STATUS)
+
+        private static final VarHandle STATUS;
+        static {
+            try {
+                STATUS = MethodHandles.lookup().findVarHandle(Transaction.class, "status", TxnStatus.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
 
         public Transaction(String id, String accountId, double amount, TxnType type) {
+            this(id, accountId, null, amount, type, LocalDateTime.now());
+        }
+
+        public Transaction(String id, String accountId, String counterpartyId, double amount, TxnType type) {
+            this(id, accountId, counterpartyId, amount, type, LocalDateTime.now());
+        }
+
+        // Used when replaying historical data where the booking time is already known
+        public Transaction(String id, String accountId, double amount, TxnType type, LocalDateTime timestamp) {
+            this(id, accountId, null, amount, type, timestamp);
+        }
+
+        public Transaction(String id, String accountId, String counterpartyId, double amount, TxnType type,
+                           LocalDateTime timestamp) {
             this.id = id;
             this.accountId = accountId;
+            this.counterpartyId = counterpartyId;
             // Banking Rule: Always use BigDecimal string constructor or valueOf to avoid double precision loss
             this.amount = BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_EVEN);
+            this.amountCents = this.amount.unscaledValue().longValueExact();
             this.type = type;
-            this.timestamp = LocalDateTime.now();
+            this.timestamp = timestamp;
             this.status = TxnStatus.PENDING;
         }
 
         // Getters
         public String getId() { return id; }
         public String getAccountId() { return accountId; }
+        public String getCounterpartyId() { return counterpartyId; }
         public BigDecimal getAmount() { return amount; }
+        public long getAmountCents() { return amountCents; }
         public TxnType getType() { return type; }
+        public LocalDateTime getTimestamp() { return timestamp; }
         public TxnStatus getStatus() { return status; }
         
-        public void setStatus(TxnStatus status) { this.status = status; }
+        /**
+         * Atomically moves from 'expected' to 'next'. Returns false if another thread
+         * changed the status first; throws if the transition itself is illegal.
+         */
+        public boolean compareAndSetStatus(TxnStatus expected, TxnStatus next) {
+            if (!expected.canTransitionTo(next)) {
+                throw new IllegalStateException("Illegal status transition " + expected + " -> " + next + " for " + id);
+            }
+            return STATUS.compareAndSet(this, expected, next);
+        }
+
+        /** Moves to 'next' from whatever the current status is, if that transition is legal (lock-free retry). */
+        public void setStatus(TxnStatus next) {
+            while (true) {
+                TxnStatus current = status;
+                if (compareAndSetStatus(current, next)) {
+                    return;
+                }
+            }
+        }
 
         @Override
         public String toString() {
-            return String.format("[%s] %s | %s | $ %s | %s", 
-                timestamp.format(DateTimeFormatter.ISO_LOCAL_TIME), id, type, amount, status);
+            // Plain concatenation: String.format re-parses the pattern on every call
+            return "[" + timestamp.format(DateTimeFormatter.ISO_LOCAL_TIME) + "] " + id + " | " + type
+                + " | $ " + amount + " | " + status;
         }
     }
 
@@ -77,24 +142,32 @@ public class LambdasDemo {
     // 3. MAIN PROCESSING ENGINE
     // ==========================================
 
-    public static void main(String[] args) {
-        System.out.println(">>> INITIALIZING BANKING TRANSACTION ENGINE <<<\n");
-
-        // --- A. DATA MOCKING ---
-        List<Transaction> txnPool = Arrays.asList(
+    // Shared mock data so the companion engine demos in this folder run against the same pool
+    static List<Transaction> samplePool() {
+        return Arrays.asList(
             new Transaction("TXN_101", "ACC_A", 5000.00, TxnType.CREDIT),
             new Transaction("TXN_102", "ACC_B", 120.50, TxnType.DEBIT),
-            new Transaction("TXN_103", "ACC_A", 200000.00, TxnType.TRANSFER), // Suspicious: High Value
+            new Transaction("TXN_103", "ACC_A", "ACC_D", 200000.00, TxnType.TRANSFER), // Suspicious: High Value
             new Transaction("TXN_104", "ACC_C", 5.00, TxnType.FEE),
             new Transaction("TXN_105", "ACC_B", 9900.00, TxnType.CREDIT),
             new Transaction("TXN_106", "ACC_A", 50.00, TxnType.DEBIT),
-            new Transaction("TXN_107", "ACC_D", 15000.00, TxnType.TRANSFER),
+            new Transaction("TXN_107", "ACC_D", "ACC_B", 15000.00, TxnType.TRANSFER),
             new Transaction("TXN_108", "ACC_X", 1000000.00, TxnType.DEBIT) // Suspicious: High Value
         );
+    }
+
+    public static void main(String[] args) {
+        System.out.println(">>> INITIALIZING BANKING TRANSACTION ENGINE <<<\n");
+
+        // --- A. DATA MOCKING ---
+        List<Transaction> txnPool = samplePool();
 
         // --- B. DEFENSIVE CODING (PREDICATES) ---
         // Predicates for reusable validation logic
-        Predicate<Transaction> isHighValue = t -> t.getAmount().compareTo(new BigDecimal("10000")) > 0;
+        // Limits are created once, not on every predicate call
+        BigDecimal highValueLimit = new BigDecimal("10000");
+        BigDecimal swiftLimit = new BigDecimal("100000");
+        Predicate<Transaction> isHighValue = t -> t.getAmount().compareTo(highValueLimit) > 0;
         Predicate<Transaction> isDebit = t -> t.getType() == TxnType.DEBIT;
         Predicate<Transaction> isCredit = t -> t.getType() == TxnType.CREDIT;
         
@@ -106,14 +179,15 @@ public class LambdasDemo {
         
         // 1. Fraud Detection Pipeline
         System.out.println("--- 1. SECURITY AUDIT (Flagging High Risk) ---");
-        List<Transaction> flaggedTxns = txnPool.stream()
+        // Safe in parallel: only the worker whose CAS wins PENDING -> FLAGGED keeps the transaction
+        List<Transaction> flaggedTxns = txnPool.parallelStream()
             .filter(potentialFraud)
-            .peek(t -> {
-                t.setStatus(TxnStatus.FLAGGED); // Side-effect: Update status
-                System.out.println("ALERT: Flagging Transaction for Review -> " + t.getId());
-            })
+            .filter(t -> t.compareAndSetStatus(TxnStatus.PENDING, TxnStatus.FLAGGED))
             .collect(Collectors.toList());
 
+        flaggedTxns.forEach(t ->
+            System.out.println("ALERT: Flagging Transaction for Review -> " + t.getId()));
+
 
         // 2. Financial Reconciliation (Reduce)
         System.out.println("\n--- 2. RECONCILIATION (Total Volume) ---");
@@ -153,7 +227,7 @@ public class LambdasDemo {
 
         // Using Optional to handle cases where no transaction meets criteria
         Optional<Transaction> highestRiskTransfer = txnPool.stream()
-            .filter(t -> swiftRiskCheck.analyze(t, new BigDecimal("100000")))
+            .filter(t -> swiftRiskCheck.analyze(t, swiftLimit))
             .max(Comparator.comparing(Transaction::getAmount));
 
         // Using ifPresentOrElse (Java 9+) or standard ifPresent
@@ -0,0 +1,271 @@
+import java.util.*;
+
+/**
+ * INCREMENTALLY MAINTAINED MATERIALIZED VIEWS
+ * -------------------------------------------
+ * totalVolume and balanceByAccount in LambdasDemo are recomputed from scratch
+ * with reduce() / groupingBy() every time. Here each aggregate is registered once
+ * as a TransactionStore.RowListener and kept up to date as rows arrive and as
+ * their status changes:
+ *
+ * ✅ sum, count, min/max, net position per account, per-type totals
+ * ✅ Each view covers a set of statuses (e.g. everything except BLOCKED); a status
+ *    change moves a row in or out of the view by applying or retracting it
+ * ✅ Reading a view is an O(1) lookup (min/max: O(log n) on update, O(1)-ish read)
+ *
+ * A view registered on a non-empty store is first filled from the rows already
+ * there (like BitmapIndex.attach); register views on the writer thread, before
+ * concurrent status changes start. Updates are synchronized per
+ * view because status CAS notifications can come from any thread. Two status
+ * changes of one row may be delivered out of order, so every view applies them
+ * as deltas that commute: the final value does not depend on the order.
+ */
+public class MaterializedViews {
+
+    // ==========================================
+    // 1. VIEW BASE (status filter + apply / retract)
+    // ==========================================
+
+    abstract static class View implements TransactionStore.RowListener {
+        final String name;
+        private final EnumSet<LambdasDemo.TxnStatus> statuses;
+
+        View(String name, EnumSet<LambdasDemo.TxnStatus> statuses) {
+            this.name = name;
+            this.statuses = EnumSet.copyOf(statuses);
+        }
+
+        /** sign is +1 when a row enters the view and -1 when it leaves. */
+        abstract void apply(TransactionStore store, int row, int sign);
+
+        abstract String describe(TransactionStore store);
+
+        @Override
+        public synchronized void onAppend(TransactionStore store, int row) {
+            if (statuses.contains(store.status(row))) {
+                apply(store, row, +1);
+            }
+        }
+
+        @Override
+        public synchronized void onStatusChange(TransactionStore store, int row,
+                                                LambdasDemo.TxnStatus from, LambdasDemo.TxnStatus to) {
+            boolean before = statuses.contains(from);
+            boolean after = statuses.contains(to);
+            if (before && !after) {
+                apply(store, row, -1);
+            } else if (!before && after) {
+                apply(store, row, +1);
+            }
+        }
+    }
+
+    // ==========================================
+    // 2. AGGREGATES
+    // ==========================================
+
+    static final class Sum extends View {
+        private long cents;
+
+        Sum(String name, EnumSet<LambdasDemo.TxnStatus> statuses) { super(name, statuses); }
+
+        @Override
+        void apply(TransactionStore store, int row, int sign) {
+            cents = Money.add(cents, sign * store.amountCents(row));
+        }
+
+        synchronized long cents() { return cents; }
+
+        @Override
+        String describe(TransactionStore store) { return "$ " + Money.format(cents()); }
+    }
+
+    static final class Count extends View {
+        private long count;
+
+        Count(String name, EnumSet<LambdasDemo.TxnStatus> statuses) { super(name, statuses); }
+
+        @Override
+        void apply(TransactionStore store, int row, int sign) {
+            count += sign;
+        }
+
+        synchronized long count() { return count; }
+
+        @Override
+        String describe(TransactionStore store) { return Long.toString(count()); }
+    }
+
+    /**
+     * Retractable min/max: a sorted multiset of amounts. A retraction can arrive
+     * before the insertion it undoes, so a multiplicity may dip below zero for a
+     * moment; only amounts with a positive multiplicity are reported.
+     */
+    static final class MinMax extends View {
+        private final TreeMap<Long, Integer> amounts = new TreeMap<>();
+
+        MinMax(String name, EnumSet<LambdasDemo.TxnStatus> statuses) { super(name, statuses); }
+
+        @Override
+        void apply(TransactionStore store, int row, int sign) {
+            amounts.merge(store.amountCents(row), sign, (n, d) -> n + d == 0 ? null : n + d);
+        }
+
+        synchronized OptionalLong min() {
+            return first(amounts.entrySet());
+        }
+
+        synchronized OptionalLong max() {
+            return first(amounts.descendingMap().entrySet());
+        }
+
+        private static OptionalLong first(Set<Map.Entry<Long, Integer>> entries) {
+            for (Map.Entry<Long, Integer> e : entries) {
+                if (e.getValue() > 0) {
+                    return OptionalLong.of(e.getKey());
+                }
+            }
+            return OptionalLong.empty();
+        }
+
+        @Override
+        String describe(TransactionStore store) {
+            return min().isPresent()
+                    ? "min $ " + Money.format(min().getAsLong()) + ", max $ " + Money.format(max().getAsLong())
+                    : "(empty)";
+        }
+    }
+
+    /** Net position per account id: debits negative, everything else positive. */
+    static final class NetPosition extends View {
+        private long[] positions = new long[64];
+
+        NetPosition(String name, EnumSet<LambdasDemo.TxnStatus> statuses) { super(name, statuses); }
+
+        @Override
+        void apply(TransactionStore store, int row, int sign) {
+            int account = store.accountIdAt(row);
+            if (account >= positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(account + 1, positions.length << 1));
+            }
+            long cents = store.amountCents(row);
+            long signed = store.type(row) == LambdasDemo.TxnType.DEBIT ? -cents : cents;
+            positions[account] = Money.add(positions[account], sign * signed);
+        }
+
+        synchronized long cents(int accountId) {
+            return accountId < positions.length ? positions[accountId] : 0L;
+        }
+
+        @Override
+        String describe(TransactionStore store) {
+            StringJoiner out = new StringJoiner(", ");
+            for (int a = 0; a < store.accountCount(); a++) {
+                out.add(store.accountName(a) + "=" + Money.format(cents(a)));
+            }
+            return out.toString();
+        }
+    }
+
+    static final class TypeTotals extends View {
+        private final long[] cents = new long[LambdasDemo.TxnType.values().length];
+        private final long[] counts = new long[cents.length];
+
+        TypeTotals(String name, EnumSet<LambdasDemo.TxnStatus> statuses) { super(name, statuses); }
+
+        @Override
+        void apply(TransactionStore store, int row, int sign) {
+            int type = store.type(row).ordinal();
+            cents[type] = Money.add(cents[type], sign * store.amountCents(row));
+            counts[type] += sign;
+        }
+
+        synchronized long cents(LambdasDemo.TxnType type) { return cents[type.ordinal()]; }
+        synchronized long count(LambdasDemo.TxnType type) { return counts[type.ordinal()]; }
+
+        @Override
+        String describe(TransactionStore store) {
+            StringJoiner out = new StringJoiner(", ");
+            for (LambdasDemo.TxnType type : LambdasDemo.TxnType.values()) {
+                out.add(type + "=" + count(type) + "/$ " + Money.format(cents(type)));
+            }
+            return out.toString();
+        }
+    }
+
+    // ==========================================
+    // 3. REGISTRY
+    // ==========================================
+
+    static final EnumSet<LambdasDemo.TxnStatus> ALL = EnumSet.allOf(LambdasDemo.TxnStatus.class);
+
+    private final TransactionStore store;
+    private final Map<String, View> views = new LinkedHashMap<>();
+
+    public MaterializedViews(TransactionStore store) {
+        this.store = store;
+    }
+
+    public <V extends View> V register(V view) {
+        if (views.putIfAbsent(view.name, view) != null) {
+            throw new IllegalArgumentException("View already registered: " + view.name);
+        }
+        synchronized (view) {               // the guard onAppend() / onStatusChange() use
+            for (int row = 0; row < store.size(); row++) {
+                view.onAppend(store, row);
+            }
+            store.addListener(view);
+        }
+        return view;
+    }
+
+    public Sum sum(String name, EnumSet<LambdasDemo.TxnStatus> statuses) { return register(new Sum(name, statuses)); }
+    public Count count(String name, EnumSet<LambdasDemo.TxnStatus> statuses) { return register(new Count(name, statuses)); }
+    public MinMax minMax(String name, EnumSet<LambdasDemo.TxnStatus> statuses) { return register(new MinMax(name, statuses)); }
+    public NetPosition netPosition(String name, EnumSet<LambdasDemo.TxnStatus> statuses) { return register(new NetPosition(name, statuses)); }
+    public TypeTotals typeTotals(String name, EnumSet<LambdasDemo.TxnStatus> statuses) { return register(new TypeTotals(name, statuses)); }
+
+    public void printReport() {
+        views.values().forEach(v -> System.out.printf("%-18s %s%n", v.name, v.describe(store)));
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> MATERIALIZED VIEWS <<<\n");
+
+        TransactionStore store = new TransactionStore();
+        MaterializedViews views = new MaterializedViews(store);
+
+        Sum totalVolume = views.sum("totalVolume", ALL);
+        views.count("txnCount", ALL);
+        views.minMax("amountRange", ALL);
+        NetPosition balanceByAccount = views.netPosition("balanceByAccount", EnumSet.complementOf(EnumSet.of(LambdasDemo.TxnStatus.BLOCKED)));
+        Count flagged = views.count("flagged", EnumSet.of(LambdasDemo.TxnStatus.FLAGGED));
+        views.typeTotals("perType", ALL);
+
+        store.appendAll(LambdasDemo.samplePool());
+        System.out.println("--- After ingest ---");
+        views.printReport();
+
+        // Fraud pass + review outcome: the views follow the status changes
+        int[] hits = store.flagAbove(1_000_000L, LambdasDemo.TxnType.DEBIT);
+        System.out.println("\nFlagged rows: " + flagged.count());
+        for (int row : hits) {
+            store.compareAndSetStatus(row, LambdasDemo.TxnStatus.FLAGGED, LambdasDemo.TxnStatus.BLOCKED);
+        }
+
+        System.out.println("\n--- After blocking the flagged debit ---");
+        views.printReport();
+
+        System.out.println("\nO(1) lookups -> total $ " + Money.format(totalVolume.cents())
+                + ", ACC_X position $ " + Money.format(balanceByAccount.cents(store.accounts().idOf("ACC_X"))));
+        System.out.println("Matches full recompute: " + (totalVolume.cents() == store.totalVolumeCents()));
+
+        // A view added later starts from the rows already in the store
+        Sum lateVolume = views.sum("lateVolume", ALL);
+        System.out.println("Late view backfilled: " + (lateVolume.cents() == store.totalVolumeCents()));
+    }
+}
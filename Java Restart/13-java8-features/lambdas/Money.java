@@ -0,0 +1,204 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * FIXED-POINT MONEY (long minor units)
+ * ------------------------------------
+ * Money used to be a BigDecimal in LambdasDemo.Transaction (one allocation per
+ * arithmetic step) and a double/int in the BankAccount demos (rounding errors,
+ * silent overflow). Money is now a plain long holding minor units, always at
+ * Money.SCALE decimals (cents), and this class holds the arithmetic on it:
+ *
+ * ✅ Zero allocation: every operation is a static method on longs
+ * ✅ Overflow detection: results that do not fit in a long throw ArithmeticException
+ * ✅ HALF_EVEN (banker's) rounding wherever precision is lost, same as the old
+ *    BigDecimal.setScale(2, RoundingMode.HALF_EVEN)
+ * ✅ Explicit scale: rescale() converts from/to other scales (e.g. 4-decimal rates)
+ *
+ * Conversions from double and BigDecimal belong at the edges (ingest, JDBC);
+ * hot paths should only see the long.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+    public static final long ONE = 100L;       // 10^SCALE minor units per major unit
+
+    private static final long[] POW10 = powersOfTen();     // 10^0 .. 10^18
+
+    private static long[] powersOfTen() {
+        long[] pow = new long[19];
+        pow[0] = 1;
+        for (int i = 1; i < pow.length; i++) {
+            pow[i] = pow[i - 1] * 10;
+        }
+        return pow;
+    }
+
+    private Money() { }
+
+    // ==========================================
+    // 1. ARITHMETIC (overflow-checked)
+    // ==========================================
+
+    public static long add(long a, long b) { return Math.addExact(a, b); }
+    public static long subtract(long a, long b) { return Math.subtractExact(a, b); }
+    public static long negate(long a) { return Math.negateExact(a); }
+    public static long multiply(long amount, long quantity) { return Math.multiplyExact(amount, quantity); }
+
+    /** amount * numerator / denominator, rounded HALF_EVEN (e.g. fees, FX, interest). */
+    public static long multiply(long amount, long numerator, long denominator) {
+        return divide(Math.multiplyExact(amount, numerator), denominator);
+    }
+
+    /** dividend / divisor rounded HALF_EVEN; overflow (Long.MIN_VALUE / -1) throws like the other operations. */
+    public static long divide(long dividend, long divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (dividend == Long.MIN_VALUE && divisor == -1) {
+            throw new ArithmeticException("long overflow");    // the only quotient that does not fit
+        }
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        // Compare 2*|remainder| with |divisor| without overflowing
+        long absRem = Math.abs(remainder);
+        long absDiv = Math.abs(divisor);
+        long half = absDiv - absRem;            // > absRem means below half
+        boolean negative = (dividend < 0) != (divisor < 0);
+        if (absRem > half || (absRem == half && (quotient & 1) != 0)) {
+            return negative ? Math.subtractExact(quotient, 1) : Math.addExact(quotient, 1);
+        }
+        return quotient;
+    }
+
+    /** Converts units held at 'fromScale' decimals to 'toScale' decimals, HALF_EVEN. */
+    public static long rescale(long units, int fromScale, int toScale) {
+        if (fromScale == toScale) {
+            return units;
+        }
+        long difference = Math.abs((long) toScale - fromScale);
+        if (difference >= POW10.length) {
+            throw new ArithmeticException("Scale change of " + difference + " digits exceeds the "
+                    + (POW10.length - 1) + " a long can hold");
+        }
+        if (toScale > fromScale) {
+            return Math.multiplyExact(units, POW10[toScale - fromScale]);
+        }
+        return divide(units, POW10[fromScale - toScale]);
+    }
+
+    public static int compare(long a, long b) { return Long.compare(a, b); }
+
+    // ==========================================
+    // 2. CONVERSIONS (edges only)
+    // ==========================================
+
+    /** Same rounding as BigDecimal.valueOf(amount).setScale(2, HALF_EVEN). */
+    public static long of(double amount) {
+        return fromBigDecimal(BigDecimal.valueOf(amount));
+    }
+
+    public static long fromBigDecimal(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long units) {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    /**
+     * Parses "-1234.5", "10", "0.125" (HALF_EVEN beyond SCALE decimals) without allocating.
+     * At least one digit is required: "-", "." and "-." are rejected, not read as 0.
+     */
+    public static long parse(CharSequence text) {
+        int n = text.length();
+        if (n == 0) {
+            throw new NumberFormatException("Empty amount");
+        }
+        boolean negative = text.charAt(0) == '-';
+        long units = 0;
+        int decimals = -1;
+        int roundDigit = -1;
+        boolean sticky = false;
+        boolean digits = false;
+        for (int i = negative ? 1 : 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Bad amount: " + text);
+            }
+            digits = true;
+            int d = c - '0';
+            if (decimals < SCALE) {
+                units = Math.addExact(Math.multiplyExact(units, 10), d);
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (roundDigit < 0) {
+                roundDigit = d;
+            } else if (d != 0) {
+                sticky = true;
+            }
+        }
+        if (!digits) {
+            throw new NumberFormatException("Amount has no digits: " + text);
+        }
+        units = Math.multiplyExact(units, POW10[SCALE - Math.max(decimals, 0)]);
+        if (roundDigit > 5 || (roundDigit == 5 && (sticky || (units & 1) != 0))) {
+            units = Math.addExact(units, 1);
+        }
+        return negative ? -units : units;
+    }
+
+    /** Appends "-1234.50" style text; no intermediate Strings. */
+    public static StringBuilder appendTo(StringBuilder sb, long units) {
+        if (units < 0) {
+            sb.append('-');
+        }
+        long major = Math.abs(units / ONE);
+        long minor = Math.abs(units % ONE);
+        sb.append(major).append('.');
+        for (long p = ONE / 10; p > minor && p > 1; p /= 10) {
+            sb.append('0');
+        }
+        return sb.append(minor);
+    }
+
+    public static String format(long units) {
+        return appendTo(new StringBuilder(24), units).toString();
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> FIXED-POINT MONEY <<<\n");
+
+        System.out.println("double   : 0.1 + 0.2 = " + (0.1 + 0.2));
+        System.out.println("Money    : 0.1 + 0.2 = " + format(add(of(0.1), of(0.2))));
+
+        long balance = parse("5000.00");
+        long fee = multiply(balance, 125, 10_000);           // 1.25% fee, HALF_EVEN
+        System.out.println("Fee 1.25% of 5000.00 = " + format(fee));
+        System.out.println("HALF_EVEN 0.125 -> " + format(parse("0.125")) + ", 0.135 -> " + format(parse("0.135")));
+        System.out.println("Split 100.00 three ways = " + format(divide(parse("100.00"), 3)));
+        System.out.println("Rescale 12.3456 (scale 4) -> " + format(rescale(123_456, 4, SCALE)));
+
+        try {
+            add(Long.MAX_VALUE, 1);
+        } catch (ArithmeticException e) {
+            System.out.println("Overflow detected: " + e.getMessage());
+        }
+
+        // Same value as the Transaction constructor's BigDecimal rule
+        System.out.println("of(120.505) = " + format(of(120.505)) + " vs BigDecimal "
+                + BigDecimal.valueOf(120.505).setScale(2, RoundingMode.HALF_EVEN));
+    }
+}
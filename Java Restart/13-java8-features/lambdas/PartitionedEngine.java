@@ -0,0 +1,364 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * PARTITIONED SINGLE-WRITER ENGINE (Sharded by Account)
+ * -----------------------------------------------------
+ * LambdasDemo processes one List on one thread. This engine hash-partitions
+ * transactions by account into N shards:
+ *
+ * ✅ Each shard is owned by exactly one thread: its TransactionStore, fraud
+ *    windows and positions are plain (unsynchronized) state
+ * ✅ Producers hand transactions over through a bounded per-shard queue; the
+ *    shard drains it in batches (one lock round-trip per batch, not per event)
+ * ✅ An account always maps to the same shard, so per-account rules (velocity,
+ *    rolling volume) need no coordination
+ * ✅ Cross-shard questions (total volume, positions, flag counts) are sent to
+ *    every shard as a query message and the shard-local answers are merged
+ *
+ * A query is queued behind everything submitted before it, so its answer covers
+ * all those transactions. The shards share only the AccountSymbolTable, which is
+ * already thread-safe. The alert sink is called from shard threads.
+ *
+ * A transaction that throws on its shard is counted and skipped rather than
+ * stopping the shard: failedCount() and lastFailure() report it, and the first
+ * failure per shard is printed to stderr. An Error (OutOfMemoryError,
+ * AssertionError from the alert sink, ...) kills the shard instead: it is printed,
+ * every query queued on that shard fails, and from then on submit() and query()
+ * routed to it throw IllegalStateException with the Error as cause. They also
+ * throw once close() has started.
+ */
+public class PartitionedEngine implements AutoCloseable {
+
+    // ==========================================
+    // 1. SHARD (single writer)
+    // ==========================================
+
+    /** Query message: runs on the shard thread, completes the future with the shard-local answer. */
+    private static final class Query<T> {
+        final Function<Shard, T> local;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Query(Function<Shard, T> local) {
+            this.local = local;
+        }
+
+        void run(Shard shard) {
+            try {
+                result.complete(local.apply(shard));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);   // an Error must not leave the caller blocked in get()
+            }
+        }
+    }
+
+    private static final Object STOP = new Object();
+
+    static final class Shard implements Runnable {
+        final int index;
+        final TransactionStore store;
+        final StreamingFraudDetector detector;
+        private final BlockingQueue<Object> inbox;
+        private final int batchSize;
+        private long flagged;
+        private long failed;
+        private RuntimeException lastFailure;
+        private volatile Throwable death;       // set once; the shard then only rejects messages
+
+        Shard(int index, AccountSymbolTable accounts, StreamingFraudDetector.Limits limits,
+              Consumer<StreamingFraudDetector.Alert> alertSink, int queueCapacity) {
+            this.index = index;
+            this.store = new TransactionStore(accounts, 1 << 10);
+            this.detector = new StreamingFraudDetector(accounts, limits, alertSink);
+            this.inbox = new ArrayBlockingQueue<>(queueCapacity);
+            this.batchSize = Math.max(1, queueCapacity / 4);
+        }
+
+        @Override
+        public void run() {
+            List<Object> batch = new ArrayList<>(batchSize);
+            int next = 0;
+            try {
+                while (true) {
+                    batch.add(inbox.take());
+                    inbox.drainTo(batch, batchSize - 1);
+                    for (next = 0; next < batch.size(); next++) {
+                        Object message = batch.get(next);
+                        if (message == STOP) {
+                            return;
+                        }
+                        handle(message);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                death = e;
+                System.err.println("shard-" + index + " died: " + e);
+                for (int i = next + 1; i < batch.size(); i++) {
+                    if (reject(batch.get(i))) {
+                        return;
+                    }
+                }
+                rejectUntilStop();
+            }
+        }
+
+        /**
+         * A dead shard keeps draining its inbox until STOP: a producer that passed the
+         * death check just before the Error must not block in put() or wait on a query forever.
+         */
+        private void rejectUntilStop() {
+            try {
+                while (!reject(inbox.take())) {
+                    // keep failing queries and dropping transactions
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** Fails a query or drops a transaction sent to a dead shard; true on STOP. */
+        private boolean reject(Object message) {
+            if (message == STOP) {
+                return true;
+            }
+            if (message instanceof Query) {
+                ((Query<?>) message).result.completeExceptionally(
+                        new IllegalStateException("shard-" + index + " died", death));
+            }
+            return false;
+        }
+
+        private void handle(Object message) {
+            if (message instanceof Query) {
+                ((Query<?>) message).run(this);
+                return;
+            }
+            try {
+                LambdasDemo.Transaction t = (LambdasDemo.Transaction) message;
+                int row = store.append(t);
+                if (detector.accept(store.txnId(row), store.accountIdAt(row), store.amountCents(row),
+                        store.type(row), store.timestamp(row))
+                        && store.compareAndSetStatus(row, LambdasDemo.TxnStatus.PENDING, LambdasDemo.TxnStatus.FLAGGED)) {
+                    flagged++;
+                }
+            } catch (RuntimeException e) {
+                if (failed++ == 0) {
+                    System.err.println("shard-" + index + ": skipping failed transaction " + message + ": " + e);
+                }
+                lastFailure = e;    // one bad transaction must not stop the shard
+            }
+        }
+
+        long flaggedCount() { return flagged; }
+        long failedCount() { return failed; }
+        RuntimeException lastFailure() { return lastFailure; }
+    }
+
+    private final AccountSymbolTable accounts;
+    private final Shard[] shards;
+    private final Thread[] threads;
+    /** Producers hold the read side while enqueueing, so nothing can be queued behind STOP. */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    public PartitionedEngine(int shardCount, StreamingFraudDetector.Limits limits,
+                             Consumer<StreamingFraudDetector.Alert> alertSink) {
+        this(shardCount, new AccountSymbolTable(), limits, alertSink, 8_192);
+    }
+
+    public PartitionedEngine(int shardCount, AccountSymbolTable accounts, StreamingFraudDetector.Limits limits,
+                             Consumer<StreamingFraudDetector.Alert> alertSink, int queueCapacity) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        this.accounts = accounts;
+        this.shards = new Shard[shardCount];
+        this.threads = new Thread[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, accounts, limits, alertSink, queueCapacity);
+            threads[i] = new Thread(shards[i], "shard-" + i);
+            threads[i].start();
+        }
+    }
+
+    // ==========================================
+    // 2. ROUTING
+    // ==========================================
+
+    /** Dense account ids spread evenly with a plain modulo. */
+    int shardOf(String accountId) {
+        return accounts.intern(accountId) % shards.length;
+    }
+
+    /** Routes the transaction to its account's shard; blocks while that shard's queue is full. */
+    public void submit(LambdasDemo.Transaction t) throws InterruptedException {
+        enqueue(shards[shardOf(t.getAccountId())], t);
+    }
+
+    private void enqueue(Shard shard, Object message) throws InterruptedException {
+        closeLock.readLock().lockInterruptibly();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Engine is closed");
+            }
+            Throwable death = shard.death;
+            if (death != null) {
+                throw new IllegalStateException("shard-" + shard.index + " died", death);
+            }
+            shard.inbox.put(message);   // shards keep draining, so close() waits at most for this put
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    // ==========================================
+    // 3. CROSS-SHARD QUERIES (scatter / merge)
+    // ==========================================
+
+    /** Runs 'local' on every shard thread and folds the answers with 'merge'. */
+    public <T> T query(Function<Shard, T> local, BinaryOperator<T> merge) throws InterruptedException {
+        List<Query<T>> pending = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            Query<T> q = new Query<>(local);
+            enqueue(shard, q);
+            pending.add(q);
+        }
+        T merged = null;
+        for (Query<T> q : pending) {
+            T part;
+            try {
+                part = q.result.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Shard query failed", e.getCause());
+            }
+            merged = merged == null ? part : merge.apply(merged, part);
+        }
+        return merged;
+    }
+
+    public long totalVolumeCents() throws InterruptedException {
+        return query(s -> s.store.totalVolumeCents(), Money::add);
+    }
+
+    public long flaggedCount() throws InterruptedException {
+        return query(Shard::flaggedCount, Long::sum);
+    }
+
+    /** Transactions that threw on their shard and were skipped. */
+    public long failedCount() throws InterruptedException {
+        return query(Shard::failedCount, Long::sum);
+    }
+
+    /** Most recent skipped-transaction error from any shard (shard order, not time order), or null. */
+    public RuntimeException lastFailure() throws InterruptedException {
+        return query(Shard::lastFailure, (a, b) -> b != null ? b : a);
+    }
+
+    public long size() throws InterruptedException {
+        return query(s -> (long) s.store.size(), Long::sum);
+    }
+
+    /** Net position per account id; each account lives on one shard, so the merge is an element-wise add. */
+    public long[] netPositionByAccount() throws InterruptedException {
+        return query(s -> s.store.netPositionByAccount(), (a, b) -> {
+            long[] sum = Arrays.copyOf(a.length >= b.length ? a : b, Math.max(a.length, b.length));
+            long[] other = a.length >= b.length ? b : a;
+            for (int i = 0; i < other.length; i++) {
+                sum[i] = Money.add(sum[i], other[i]);
+            }
+            return sum;
+        });
+    }
+
+    public AccountSymbolTable accounts() {
+        return accounts;
+    }
+
+    /** Lets every shard finish its queue, then stops the threads. */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.inbox.put(STOP);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(">>> PARTITIONED SINGLE-WRITER ENGINE <<<\n");
+
+        int shardCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+        Queue<StreamingFraudDetector.Alert> alerts = new ConcurrentLinkedQueue<>();
+        List<LambdasDemo.Transaction> feed = new ArrayList<>(LambdasDemo.samplePool());
+
+        Random rnd = new Random(14);
+        LambdasDemo.TxnType[] types = LambdasDemo.TxnType.values();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 15, 9, 0);
+        for (int i = 0; i < 1_000_000; i++) {
+            feed.add(new LambdasDemo.Transaction("TXN_" + (1_000 + i), "ACC_" + rnd.nextInt(5_000),
+                    1 + rnd.nextInt(20_000), types[rnd.nextInt(types.length)], start.plusSeconds(i / 10)));
+        }
+
+        long t0 = System.nanoTime();
+        long total;
+        long flagged;
+        long rows;
+        long[] positions;
+        PartitionedEngine closedEngine;
+        try (PartitionedEngine engine = new PartitionedEngine(shardCount, new StreamingFraudDetector.Limits(), alerts::add)) {
+            for (LambdasDemo.Transaction t : feed) {
+                engine.submit(t);
+            }
+            total = engine.totalVolumeCents();
+            flagged = engine.flaggedCount();
+            rows = engine.size();
+            positions = engine.netPositionByAccount();
+            System.out.println("Rows per shard: " + Arrays.toString(
+                    Arrays.stream(engine.shards).mapToInt(s -> s.store.size()).toArray()));
+            System.out.println("ACC_X net position: $ " + Money.format(positions[engine.accounts().idOf("ACC_X")]));
+            System.out.println("Skipped txns: " + engine.failedCount() + ", last error: " + engine.lastFailure());
+            closedEngine = engine;
+        }
+        try {
+            closedEngine.size();
+        } catch (IllegalStateException e) {
+            System.out.println("Query after close rejected: " + e.getMessage());
+        }
+        double seconds = (System.nanoTime() - t0) / 1e9;
+
+        System.out.printf("%d shards processed %,d txns in %.3f s%n", shardCount, rows, seconds);
+        System.out.println("Total volume $ " + Money.format(total) + ", flagged " + flagged + ", alerts " + alerts.size());
+
+        // Same answer as one store on one thread
+        TransactionStore single = new TransactionStore();
+        single.appendAll(feed);
+        System.out.println("Matches single-threaded store: " + (single.totalVolumeCents() == total));
+    }
+}
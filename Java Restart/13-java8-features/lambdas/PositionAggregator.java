@@ -0,0 +1,264 @@
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Collectors;
+
+/**
+ * LOCK-FREE NET POSITION AGGREGATOR
+ * ---------------------------------
+ * Replaces the groupingBy(..., mapping(..., reducing(BigDecimal.ZERO, BigDecimal::add)))
+ * report in LambdasDemo.main, which is single-threaded, allocates a BigDecimal per
+ * addition and has to re-run over the whole pool for every report.
+ *
+ * ✅ Many ingest threads can call add() at the same time
+ * ✅ Accounts are dense ids from an AccountSymbolTable, so a position is a slot
+ *    in an array rather than a hash map entry
+ * ✅ Writers are spread over several stripes (picked by thread), each a paged
+ *    AtomicLongArray of cents, so hot accounts do not serialize on one cache line;
+ *    pages (and the directory chunks pointing at them) are allocated on first use
+ * ✅ positionCents() sums the stripes and never blocks writers
+ * ✅ snapshot() is a consistent cut while ingestion continues: every add() holds
+ *    its stripe's lock in shared mode, and a snapshot takes every stripe's lock
+ *    exclusively for the duration of the copy
+ *
+ * Snapshot semantics: a cut contains exactly the add() calls that completed before
+ * it and none that started after it, across all accounts, and cut() reports the
+ * matching ingested count. Writers on different stripes never contend with each
+ * other; they only wait while a snapshot is copying (O(accounts x stripes)).
+ */
+public class PositionAggregator {
+
+    private static final int PAGE_SHIFT = 10;                  // 1024 accounts per page
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int CHUNK_SHIFT = 7;                  // 128 pages per directory chunk
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int MAX_ACCOUNTS = 1 << (PAGE_SHIFT + 2 * CHUNK_SHIFT);   // 16M
+
+    /** One writer stripe: a two-level page table (chunk -> page -> slot), filled in lazily. */
+    private static final class Stripe {
+        final StampedLock cut = new StampedLock();     // shared: add(), exclusive: snapshot
+        private final AtomicReferenceArray<AtomicReferenceArray<AtomicLongArray>> chunks =
+                new AtomicReferenceArray<>(CHUNK_SIZE);
+
+        /** Returns null for a page nobody has written to unless 'create' is set. */
+        AtomicLongArray page(int pageIndex, boolean create) {
+            int c = pageIndex >>> CHUNK_SHIFT;
+            AtomicReferenceArray<AtomicLongArray> chunk = chunks.get(c);
+            if (chunk == null) {
+                if (!create) {
+                    return null;
+                }
+                chunks.compareAndSet(c, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+                chunk = chunks.get(c);
+            }
+            int p = pageIndex & (CHUNK_SIZE - 1);
+            AtomicLongArray page = chunk.get(p);
+            if (page == null && create) {
+                chunk.compareAndSet(p, null, new AtomicLongArray(PAGE_SIZE));
+                page = chunk.get(p);
+            }
+            return page;
+        }
+    }
+
+    private final AccountSymbolTable accounts;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final LongAdder ingested = new LongAdder();
+
+    public PositionAggregator() {
+        this(new AccountSymbolTable());
+    }
+
+    public PositionAggregator(AccountSymbolTable accounts) {
+        this.accounts = accounts;
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1;
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeMask = n - 1;
+    }
+
+    /** Debits reduce the position, every other type increases it (same rule as LambdasDemo). */
+    public void add(LambdasDemo.Transaction t) {
+        long cents = t.getAmountCents();
+        add(accounts.intern(t.getAccountId()), t.getType() == LambdasDemo.TxnType.DEBIT ? -cents : cents);
+    }
+
+    public void add(String accountId, long signedCents) {
+        add(accounts.intern(accountId), signedCents);
+    }
+
+    public void add(int accountId, long signedCents) {
+        checkAccountId(accountId);
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+        long stamp = stripe.cut.readLock();
+        try {
+            stripe.page(accountId >>> PAGE_SHIFT, true).addAndGet(accountId & (PAGE_SIZE - 1), signedCents);
+            ingested.increment();
+        } finally {
+            stripe.cut.unlockRead(stamp);
+        }
+    }
+
+    private static void checkAccountId(int accountId) {
+        if (accountId < 0 || accountId >= MAX_ACCOUNTS) {
+            throw new IllegalArgumentException("Account id out of range [0, " + MAX_ACCOUNTS + "): " + accountId);
+        }
+    }
+
+    public long positionCents(int accountId) {
+        checkAccountId(accountId);
+        int pageIndex = accountId >>> PAGE_SHIFT;
+        int slot = accountId & (PAGE_SIZE - 1);
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            AtomicLongArray page = stripe.page(pageIndex, false);
+            if (page != null) {
+                total += page.get(slot);
+            }
+        }
+        return total;
+    }
+
+    public long positionCents(String accountId) {
+        int id = accounts.idOf(accountId);
+        return id < 0 ? 0L : positionCents(id);
+    }
+
+    public long ingestedCount() {
+        return ingested.sum();
+    }
+
+    /** A consistent cut: positions by account id and the number of add() calls they contain. */
+    public static final class Cut {
+        public final long[] positionCents;
+        public final long ingested;
+
+        Cut(long[] positionCents, long ingested) {
+            this.positionCents = positionCents;
+            this.ingested = ingested;
+        }
+    }
+
+    /** Pauses writers (all stripes, in index order) while the positions are copied. */
+    public Cut cut() {
+        long[] stamps = new long[stripes.length];
+        int locked = 0;
+        try {
+            for (; locked < stripes.length; locked++) {
+                stamps[locked] = stripes[locked].cut.writeLock();
+            }
+            // ids used by any completed add() were interned before it, so size() covers them
+            long[] copy = new long[accounts.size()];
+            for (int id = 0; id < copy.length; id++) {
+                copy[id] = positionCents(id);
+            }
+            return new Cut(copy, ingested.sum());
+        } finally {
+            while (locked > 0) {
+                locked--;
+                stripes[locked].cut.unlockWrite(stamps[locked]);
+            }
+        }
+    }
+
+    /** Net position in cents for every known account, indexed by account id, as one consistent cut. */
+    public long[] snapshot() {
+        return cut().positionCents;
+    }
+
+    /** Report view: account ids are mapped back to names only here. */
+    public SortedMap<String, Long> snapshotByName() {
+        long[] copy = snapshot();
+        SortedMap<String, Long> report = new TreeMap<>();
+        for (int id = 0; id < copy.length; id++) {
+            report.put(accounts.name(id), copy[id]);
+        }
+        return report;
+    }
+
+    public AccountSymbolTable accounts() {
+        return accounts;
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(">>> PARALLEL NET POSITION AGGREGATOR <<<\n");
+
+        List<LambdasDemo.Transaction> pool = LambdasDemo.samplePool();
+        PositionAggregator aggregator = new PositionAggregator();
+
+        int feeds = 4;
+        int rounds = 25_000;
+        ExecutorService ingest = Executors.newFixedThreadPool(feeds);
+        CountDownLatch done = new CountDownLatch(feeds);
+        for (int f = 0; f < feeds; f++) {
+            ingest.submit(() -> {
+                for (int r = 0; r < rounds; r++) {
+                    pool.forEach(aggregator::add);
+                }
+                done.countDown();
+            });
+        }
+
+        // Reports are served while ingestion is still running
+        while (done.getCount() > 0) {
+            System.out.println("Live read after " + aggregator.ingestedCount() + " txns: ACC_A = $ "
+                    + Money.format(aggregator.positionCents("ACC_A")));
+            Thread.sleep(20);
+        }
+        ingest.shutdown();
+
+        // Consistent cuts under load: every add() is +1 cent, so each cut must sum to its count
+        PositionAggregator counter = new PositionAggregator();
+        for (int a = 0; a < 10_000; a++) {
+            counter.accounts().intern("ACC_" + a);
+        }
+        ExecutorService load = Executors.newFixedThreadPool(feeds);
+        for (int f = 0; f < feeds; f++) {
+            int seed = f;
+            load.submit(() -> {
+                Random rnd = new Random(seed);
+                for (int i = 0; i < 2_000_000; i++) {
+                    counter.add(rnd.nextInt(10_000), 1);
+                }
+            });
+        }
+        load.shutdown();
+        int cuts = 0;
+        boolean consistent = true;
+        while (!load.isTerminated()) {
+            Cut cut = counter.cut();
+            consistent &= Arrays.stream(cut.positionCents).sum() == cut.ingested;
+            cuts++;
+        }
+        System.out.println("\n" + cuts + " cuts taken during ingestion, all consistent: " + consistent);
+
+        // Cross-check against the original single-threaded BigDecimal collector
+        Map<String, BigDecimal> expected = pool.stream()
+            .collect(Collectors.groupingBy(
+                LambdasDemo.Transaction::getAccountId,
+                Collectors.mapping(
+                    t -> t.getType() == LambdasDemo.TxnType.DEBIT ? t.getAmount().negate() : t.getAmount(),
+                    Collectors.reducing(BigDecimal.ZERO, BigDecimal::add)
+                )
+            ));
+
+        System.out.println("\n--- Final Net Positions ---");
+        aggregator.snapshotByName().forEach((acc, cents) -> {
+            BigDecimal perRound = expected.get(acc).multiply(BigDecimal.valueOf((long) feeds * rounds));
+            System.out.printf("Account: %-6s | Net Position: $ %s | matches collector: %b%n",
+                    acc, Money.format(cents),
+                    BigDecimal.valueOf(cents, 2).compareTo(perRound) == 0);
+        });
+    }
+}
@@ -0,0 +1,272 @@
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * COMPILED RISK RULE ENGINE
+ * -------------------------
+ * A rule is a conjunction of conditions (Predicate<Transaction> or a RiskAnalyzer
+ * bound to a limit). Evaluating hundreds of hand-ordered Predicate.and() chains
+ * re-runs shared conditions once per rule and keeps cheap, selective checks
+ * stuck behind expensive ones.
+ *
+ * compile() turns the rule set into one decision table:
+ *
+ * ✅ Every distinct condition gets a slot and is evaluated at most once per transaction
+ * ✅ Each rule becomes an int[] of condition slots, evaluated left to right with short-circuit
+ * ✅ Per-condition pass rate and cost are observed at runtime, and every
+ *    reorderInterval transactions each rule is re-sorted by cost / (1 - passRate),
+ *    so conditions that reject cheaply run first
+ * ✅ Per-rule hit counters and sampled latency
+ *
+ * A CompiledRules instance is meant to be owned by one worker thread.
+ */
+public class RuleEngine {
+
+    // ==========================================
+    // 1. RULE DEFINITIONS
+    // ==========================================
+
+    static final class Condition {
+        final String name;
+        final Predicate<LambdasDemo.Transaction> test;
+
+        private Condition(String name, Predicate<LambdasDemo.Transaction> test) {
+            this.name = name;
+            this.test = test;
+        }
+
+        static Condition of(String name, Predicate<LambdasDemo.Transaction> test) {
+            return new Condition(name, test);
+        }
+
+        /** Binds a RiskAnalyzer to a fixed limit so it can take part in a rule. */
+        static Condition of(String name, LambdasDemo.RiskAnalyzer analyzer, BigDecimal limit) {
+            return new Condition(name, t -> analyzer.analyze(t, limit));
+        }
+    }
+
+    static final class Rule {
+        final String name;
+        final List<Condition> conditions;
+
+        Rule(String name, Condition... conditions) {
+            if (conditions.length == 0) {
+                throw new IllegalArgumentException("Rule " + name + " has no conditions");
+            }
+            this.name = name;
+            this.conditions = Arrays.asList(conditions);
+        }
+    }
+
+    public static CompiledRules compile(List<Rule> rules) {
+        return new CompiledRules(rules, 4096);
+    }
+
+    // ==========================================
+    // 2. FUSED EVALUATOR
+    // ==========================================
+
+    static final class CompiledRules {
+        private static final int TIMING_SAMPLE_MASK = 31; // time 1 in 32 transactions
+
+        private final Condition[] conditions;
+        private final String[] ruleNames;
+        private final int[][] ruleConditions;
+        private final int reorderInterval;
+
+        // Per-transaction memo: condition i is valid for this txn when stamp[i] == generation
+        private final int[] stamp;
+        private final boolean[] value;
+        private int generation;
+
+        // Observed statistics
+        private final long[] condEvaluations;
+        private final long[] condPasses;
+        private final long[] condSampledNanos;
+        private final long[] condSamples;
+        private final long[] ruleEvaluations;
+        private final long[] ruleHits;
+        private final long[] ruleSampledNanos;
+        private final long[] ruleSamples;
+        private long transactions;
+
+        CompiledRules(List<Rule> rules, int reorderInterval) {
+            Map<Condition, Integer> slots = new IdentityHashMap<>();
+            List<Condition> table = new ArrayList<>();
+            ruleNames = new String[rules.size()];
+            ruleConditions = new int[rules.size()][];
+            for (int r = 0; r < rules.size(); r++) {
+                Rule rule = rules.get(r);
+                ruleNames[r] = rule.name;
+                ruleConditions[r] = new int[rule.conditions.size()];
+                for (int c = 0; c < rule.conditions.size(); c++) {
+                    Condition condition = rule.conditions.get(c);
+                    Integer slot = slots.get(condition);
+                    if (slot == null) {
+                        slot = table.size();
+                        slots.put(condition, slot);
+                        table.add(condition);
+                    }
+                    ruleConditions[r][c] = slot;
+                }
+            }
+            this.conditions = table.toArray(new Condition[0]);
+            this.reorderInterval = reorderInterval;
+            int n = conditions.length;
+            stamp = new int[n];
+            value = new boolean[n];
+            condEvaluations = new long[n];
+            condPasses = new long[n];
+            condSampledNanos = new long[n];
+            condSamples = new long[n];
+            int m = ruleNames.length;
+            ruleEvaluations = new long[m];
+            ruleHits = new long[m];
+            ruleSampledNanos = new long[m];
+            ruleSamples = new long[m];
+        }
+
+        /** Runs every rule against the transaction, reporting matching rule indexes; returns the hit count. */
+        public int evaluate(LambdasDemo.Transaction t, IntConsumer onHit) {
+            if (++generation == 0) {          // wrapped: invalidate every memo slot once
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+            boolean timed = (transactions & TIMING_SAMPLE_MASK) == 0;
+            int hits = 0;
+            for (int r = 0; r < ruleConditions.length; r++) {
+                long ruleStart = timed ? System.nanoTime() : 0L;
+                boolean matched = true;
+                for (int slot : ruleConditions[r]) {
+                    if (!test(slot, t, timed)) {
+                        matched = false;
+                        break;
+                    }
+                }
+                ruleEvaluations[r]++;
+                if (timed) {
+                    ruleSampledNanos[r] += System.nanoTime() - ruleStart;
+                    ruleSamples[r]++;
+                }
+                if (matched) {
+                    ruleHits[r]++;
+                    hits++;
+                    onHit.accept(r);
+                }
+            }
+            if (++transactions % reorderInterval == 0) {
+                reorder();
+            }
+            return hits;
+        }
+
+        private boolean test(int slot, LambdasDemo.Transaction t, boolean timed) {
+            if (stamp[slot] == generation) {
+                return value[slot];
+            }
+            long start = timed ? System.nanoTime() : 0L;
+            boolean result = conditions[slot].test.test(t);
+            if (timed) {
+                condSampledNanos[slot] += System.nanoTime() - start;
+                condSamples[slot]++;
+            }
+            condEvaluations[slot]++;
+            if (result) {
+                condPasses[slot]++;
+            }
+            stamp[slot] = generation;
+            value[slot] = result;
+            return result;
+        }
+
+        /** Re-sorts every rule so the conditions with the lowest cost per rejection run first. */
+        void reorder() {
+            double[] rank = new double[conditions.length];
+            for (int i = 0; i < conditions.length; i++) {
+                double cost = condSamples[i] == 0 ? 1.0 : Math.max(1.0, (double) condSampledNanos[i] / condSamples[i]);
+                double passRate = condEvaluations[i] == 0 ? 0.5 : (double) condPasses[i] / condEvaluations[i];
+                rank[i] = cost / Math.max(1e-6, 1.0 - passRate);
+            }
+            for (int[] order : ruleConditions) {
+                // Insertion sort: rules are short and usually already close to sorted
+                for (int i = 1; i < order.length; i++) {
+                    int slot = order[i];
+                    int j = i - 1;
+                    while (j >= 0 && rank[order[j]] > rank[slot]) {
+                        order[j + 1] = order[j];
+                        j--;
+                    }
+                    order[j + 1] = slot;
+                }
+            }
+        }
+
+        public String ruleName(int rule) { return ruleNames[rule]; }
+        public int ruleCount() { return ruleNames.length; }
+        public long hits(int rule) { return ruleHits[rule]; }
+
+        public void printStats() {
+            System.out.printf("%-22s %10s %8s %10s  %s%n", "RULE", "EVALS", "HITS", "AVG ns", "ORDER");
+            for (int r = 0; r < ruleNames.length; r++) {
+                StringJoiner order = new StringJoiner(" & ");
+                for (int slot : ruleConditions[r]) {
+                    order.add(conditions[slot].name);
+                }
+                long avg = ruleSamples[r] == 0 ? 0 : ruleSampledNanos[r] / ruleSamples[r];
+                System.out.printf("%-22s %10d %8d %10d  %s%n",
+                        ruleNames[r], ruleEvaluations[r], ruleHits[r], avg, order);
+            }
+            System.out.printf("%n%-22s %10s %10s%n", "CONDITION", "EVALS", "PASS %");
+            for (int i = 0; i < conditions.length; i++) {
+                double pass = condEvaluations[i] == 0 ? 0 : 100.0 * condPasses[i] / condEvaluations[i];
+                System.out.printf("%-22s %10d %9.1f%%%n", conditions[i].name, condEvaluations[i], pass);
+            }
+        }
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> COMPILED RISK RULE ENGINE <<<\n");
+
+        BigDecimal tenThousand = new BigDecimal("10000");
+        BigDecimal oneLakh = new BigDecimal("100000");
+
+        // Written in the "natural" order: expensive / unselective checks first
+        Condition isOffshore = Condition.of("offshoreAccount", t -> t.getAccountId().matches("ACC_[X-Z].*"));
+        Condition isHighValue = Condition.of("highValue", t -> t.getAmount().compareTo(tenThousand) > 0);
+        Condition isDebit = Condition.of("debit", t -> t.getType() == LambdasDemo.TxnType.DEBIT);
+        Condition isTransfer = Condition.of("transfer", t -> t.getType() == LambdasDemo.TxnType.TRANSFER);
+        LambdasDemo.RiskAnalyzer swiftRiskCheck = (t, limit) ->
+            t.getType() == LambdasDemo.TxnType.TRANSFER && t.getAmount().compareTo(limit) > 0;
+        Condition swift = Condition.of("swiftRisk", swiftRiskCheck, oneLakh);
+
+        RuleEngine.CompiledRules rules = compile(Arrays.asList(
+            new Rule("potentialFraud", isHighValue, isDebit),
+            new Rule("offshoreHighDebit", isOffshore, isHighValue, isDebit),
+            new Rule("largeTransfer", isHighValue, isTransfer),
+            new Rule("swiftTransfer", swift)
+        ));
+
+        List<LambdasDemo.Transaction> pool = LambdasDemo.samplePool();
+        for (LambdasDemo.Transaction t : pool) {
+            rules.evaluate(t, r -> System.out.println("RULE " + rules.ruleName(r) + " matched " + t.getId()));
+        }
+
+        // Warm the statistics with a larger synthetic feed so reordering kicks in
+        Random rnd = new Random(7);
+        LambdasDemo.TxnType[] types = LambdasDemo.TxnType.values();
+        for (int i = 0; i < 50_000; i++) {
+            LambdasDemo.Transaction t = new LambdasDemo.Transaction("TXN_" + (1000 + i),
+                    "ACC_" + (char) ('A' + rnd.nextInt(26)), rnd.nextInt(20_000), types[rnd.nextInt(types.length)]);
+            rules.evaluate(t, r -> { });
+        }
+
+        System.out.println();
+        rules.printStats();
+    }
+}
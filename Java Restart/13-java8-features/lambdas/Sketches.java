@@ -0,0 +1,408 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * APPROXIMATE ANALYTICS SKETCHES
+ * ------------------------------
+ * "How many distinct accounts?", "p99 amount per type?" and "which accounts
+ * dominate?" would each need a groupingBy() of the whole pool into memory. These
+ * sketches answer them approximately in fixed memory:
+ *
+ * ✅ HyperLogLog      – distinct count, 2^p one-byte registers (~1.04/sqrt(2^p) error)
+ * ✅ QuantileSketch   – log-spaced buckets (DDSketch style): every quantile is within
+ *                       a relative error alpha of a real value, whatever the skew
+ * ✅ HeavyHitters     – Count-Min counters plus the k keys with the highest estimates
+ *
+ * All three are mergeable (max / add of registers and counters), so shards, threads
+ * and parallel streams can each build one and combine them. They take primitive
+ * longs on the ingest path; distinct(), quantiles() and heavyHitters() wrap them
+ * as stream Collectors.
+ */
+public final class Sketches {
+
+    private Sketches() { }
+
+    // ==========================================
+    // 1. HASHING
+    // ==========================================
+
+    /** 64-bit finalizer (SplitMix64): spreads dense ids and sequential values over all bits. */
+    static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /** 64-bit FNV-1a over the UTF-16 chars, then mixed; for String keys such as account names. */
+    static long hash(CharSequence s) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    // ==========================================
+    // 2. HYPERLOGLOG (distinct count)
+    // ==========================================
+
+    static final class HyperLogLog {
+        private final int p;
+        private final byte[] registers;
+
+        HyperLogLog(int p) {
+            if (p < 4 || p > 18) {
+                throw new IllegalArgumentException("Precision must be 4..18: " + p);
+            }
+            this.p = p;
+            this.registers = new byte[1 << p];
+        }
+
+        /** Adds an already-hashed key (see mix / hash). */
+        void addHash(long hash) {
+            int index = (int) (hash >>> (64 - p));
+            int rank = Long.numberOfLeadingZeros((hash << p) | (1L << (p - 1))) + 1;
+            if (rank > registers[index]) {
+                registers[index] = (byte) rank;
+            }
+        }
+
+        void add(long key) { addHash(mix(key)); }
+
+        long estimate() {
+            int m = registers.length;
+            double sum = 0;
+            int zeros = 0;
+            for (byte r : registers) {
+                sum += 1.0 / (1L << r);
+                zeros += r == 0 ? 1 : 0;
+            }
+            double alpha = 0.7213 / (1 + 1.079 / m);
+            double raw = alpha * m * m / sum;
+            if (raw <= 2.5 * m && zeros > 0) {
+                return Math.round(m * Math.log((double) m / zeros));     // linear counting for small sets
+            }
+            return Math.round(raw);
+        }
+
+        HyperLogLog merge(HyperLogLog other) {
+            if (other.p != p) {
+                throw new IllegalArgumentException("Precision mismatch: " + p + " vs " + other.p);
+            }
+            for (int i = 0; i < registers.length; i++) {
+                registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+            }
+            return this;
+        }
+    }
+
+    // ==========================================
+    // 3. QUANTILE SKETCH (relative-error log buckets)
+    // ==========================================
+
+    /**
+     * Value v > 0 goes to bucket ceil(log_gamma(v)), gamma = (1 + alpha) / (1 - alpha).
+     * Buckets cover every positive long, so memory is fixed: about 2,200 counters at 1%.
+     */
+    static final class QuantileSketch {
+        private final double alpha;
+        private final double logGamma;
+        private final long[] counts;
+        private long zeros;
+        private long total;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        QuantileSketch(double alpha) {
+            if (!(alpha > 0 && alpha < 1)) {
+                throw new IllegalArgumentException("Relative accuracy must be in (0, 1): " + alpha);
+            }
+            this.alpha = alpha;
+            this.logGamma = Math.log((1 + alpha) / (1 - alpha));
+            this.counts = new long[bucket(Long.MAX_VALUE) + 1];
+        }
+
+        private int bucket(long value) {
+            return (int) Math.ceil(Math.log(value) / logGamma);
+        }
+
+        /** Adds a non-negative value (e.g. an amount in cents). */
+        void add(long value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Negative value: " + value);
+            }
+            if (value == 0) {
+                zeros++;
+            } else {
+                counts[bucket(value)]++;
+            }
+            total++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        /** Estimated q-quantile (0 <= q <= 1), within alpha of a real value; -1 when empty. */
+        long quantile(double q) {
+            if (total == 0) {
+                return -1;
+            }
+            long rank = (long) (q * (total - 1));
+            if (rank < zeros) {
+                return 0;
+            }
+            long seen = zeros;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen > rank) {
+                    double estimate = 2 * Math.exp(i * logGamma) / (1 + Math.exp(logGamma));
+                    return Math.max(min, Math.min(max, Math.round(estimate)));
+                }
+            }
+            return max;
+        }
+
+        long count() { return total; }
+
+        QuantileSketch merge(QuantileSketch other) {
+            if (other.alpha != alpha) {
+                throw new IllegalArgumentException("Accuracy mismatch: " + alpha + " vs " + other.alpha);
+            }
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            zeros += other.zeros;
+            total += other.total;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            return this;
+        }
+    }
+
+    // ==========================================
+    // 4. COUNT-MIN + HEAVY HITTERS
+    // ==========================================
+
+    static final class HeavyHitters {
+        private final int width;
+        private final long[][] rows;
+        private final int k;
+        // candidate keys -> last estimate: open addressing, linear probing, at most half full
+        private final long[] candidateKeys;
+        private final long[] candidateEstimates;
+        private final boolean[] candidateUsed;
+        private int candidateCount;
+        private long total;
+
+        /** width x depth counters; estimates overshoot by at most ~(e / width) * total with prob 1 - e^-depth. */
+        HeavyHitters(int width, int depth, int k) {
+            if (k < 1) {
+                throw new IllegalArgumentException("k must be positive: " + k);
+            }
+            this.width = Integer.highestOneBit(Math.max(width, 16));
+            this.rows = new long[depth][this.width];
+            this.k = k;
+            int slots = Integer.highestOneBit(Math.max(4, k) * 2 - 1) << 1;
+            this.candidateKeys = new long[slots];
+            this.candidateEstimates = new long[slots];
+            this.candidateUsed = new boolean[slots];
+        }
+
+        void add(long key, long weight) {
+            total += weight;
+            long h = mix(key);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            long estimate = Long.MAX_VALUE;
+            for (int d = 0; d < rows.length; d++) {
+                int slot = (h1 + d * h2) & (width - 1);         // double hashing: one mix for all rows
+                rows[d][slot] += weight;
+                estimate = Math.min(estimate, rows[d][slot]);
+            }
+            offerCandidate(key, estimate);
+        }
+
+        void add(long key) { add(key, 1); }
+
+        long estimate(long key) {
+            long h = mix(key);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            long estimate = Long.MAX_VALUE;
+            for (int d = 0; d < rows.length; d++) {
+                estimate = Math.min(estimate, rows[d][(h1 + d * h2) & (width - 1)]);
+            }
+            return estimate;
+        }
+
+        private void offerCandidate(long key, long estimate) {
+            int mask = candidateKeys.length - 1;
+            int slot = (int) mix(key) & mask;
+            while (candidateUsed[slot]) {
+                if (candidateKeys[slot] == key) {
+                    candidateEstimates[slot] = estimate;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (candidateCount < k) {
+                candidateUsed[slot] = true;
+                candidateKeys[slot] = key;
+                candidateEstimates[slot] = estimate;
+                candidateCount++;
+                return;
+            }
+            // k is small (tens), so a scan for the weakest candidate is cheaper than a heap
+            int weakest = -1;
+            for (int i = 0; i < candidateUsed.length; i++) {
+                if (candidateUsed[i] && (weakest < 0 || candidateEstimates[i] < candidateEstimates[weakest])) {
+                    weakest = i;
+                }
+            }
+            if (estimate > candidateEstimates[weakest]) {
+                removeCandidate(weakest);
+                candidateCount--;
+                offerCandidate(key, estimate);
+            }
+        }
+
+        /** Backward-shift delete: pulls later entries of the probe run into the hole, no tombstones. */
+        private void removeCandidate(int hole) {
+            int mask = candidateKeys.length - 1;
+            int slot = hole;
+            while (true) {
+                slot = (slot + 1) & mask;
+                if (!candidateUsed[slot]) {
+                    break;
+                }
+                int home = (int) mix(candidateKeys[slot]) & mask;
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {   // home is at or before the hole
+                    candidateKeys[hole] = candidateKeys[slot];
+                    candidateEstimates[hole] = candidateEstimates[slot];
+                    hole = slot;
+                }
+            }
+            candidateUsed[hole] = false;
+        }
+
+        private long[] candidateKeys() {
+            long[] keys = new long[candidateCount];
+            int n = 0;
+            for (int i = 0; i < candidateUsed.length; i++) {
+                if (candidateUsed[i]) {
+                    keys[n++] = candidateKeys[i];
+                }
+            }
+            return keys;
+        }
+
+        /** Keys with the highest estimated weight, heaviest first. */
+        List<Map.Entry<Long, Long>> top() {
+            List<Map.Entry<Long, Long>> out = new ArrayList<>(candidateCount);
+            for (long key : candidateKeys()) {
+                out.add(Map.entry(key, estimate(key)));
+            }
+            out.sort(Map.Entry.<Long, Long>comparingByValue().reversed());
+            return out;
+        }
+
+        long total() { return total; }
+
+        HeavyHitters merge(HeavyHitters other) {
+            if (other.width != width || other.rows.length != rows.length) {
+                throw new IllegalArgumentException("Count-Min shape mismatch");
+            }
+            for (int d = 0; d < rows.length; d++) {
+                for (int i = 0; i < width; i++) {
+                    rows[d][i] += other.rows[d][i];
+                }
+            }
+            total += other.total;
+            long[] mine = candidateKeys();
+            Arrays.fill(candidateUsed, false);
+            candidateCount = 0;
+            for (long key : mine) {
+                offerCandidate(key, estimate(key));
+            }
+            for (long key : other.candidateKeys()) {
+                offerCandidate(key, estimate(key));     // a key in both tables just refreshes its estimate
+            }
+            return this;
+        }
+    }
+
+    // ==========================================
+    // 5. STREAM COLLECTORS (combiner = merge)
+    // ==========================================
+
+    static <T> Collector<T, ?, HyperLogLog> distinct(ToLongFunction<T> keyHash, int precision) {
+        return Collector.of(() -> new HyperLogLog(precision),
+                (hll, t) -> hll.addHash(keyHash.applyAsLong(t)),
+                HyperLogLog::merge,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    static <T> Collector<T, ?, QuantileSketch> quantiles(ToLongFunction<T> value, double alpha) {
+        return Collector.of(() -> new QuantileSketch(alpha),
+                (sketch, t) -> sketch.add(value.applyAsLong(t)),
+                QuantileSketch::merge,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    static <T> Collector<T, ?, HeavyHitters> heavyHitters(ToLongFunction<T> key, int width, int depth, int k) {
+        return Collector.of(() -> new HeavyHitters(width, depth, k),
+                (hh, t) -> hh.add(key.applyAsLong(t)),
+                HeavyHitters::merge,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> APPROXIMATE ANALYTICS SKETCHES <<<\n");
+
+        // Skewed traffic: a few accounts carry most of the volume
+        List<LambdasDemo.Transaction> pool = new ArrayList<>(LambdasDemo.samplePool());
+        Random rnd = new Random(16);
+        LambdasDemo.TxnType[] types = LambdasDemo.TxnType.values();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 15, 9, 0);
+        for (int i = 0; i < 1_000_000; i++) {
+            int account = rnd.nextInt(10) < 3 ? rnd.nextInt(20) : rnd.nextInt(200_000);
+            double amount = Math.exp(rnd.nextGaussian() * 1.5 + 5);      // log-normal amounts
+            pool.add(new LambdasDemo.Transaction("TXN_" + (1_000 + i), "ACC_" + account,
+                    Math.max(0.01, amount), types[rnd.nextInt(types.length)], start.plusSeconds(i)));
+        }
+
+        // 1. Distinct accounts: 16 KB of registers vs a HashSet of every name
+        HyperLogLog hll = pool.parallelStream().collect(distinct(t -> hash(t.getAccountId()), 14));
+        long exactDistinct = pool.stream().map(LambdasDemo.Transaction::getAccountId).distinct().count();
+        System.out.printf("Distinct accounts: ~%,d (exact %,d)%n", hll.estimate(), exactDistinct);
+
+        // 2. Percentiles per TxnType
+        Map<LambdasDemo.TxnType, QuantileSketch> perType = pool.parallelStream().collect(Collectors.groupingBy(
+                LambdasDemo.Transaction::getType, () -> new EnumMap<>(LambdasDemo.TxnType.class),
+                quantiles(LambdasDemo.Transaction::getAmountCents, 0.01)));
+        perType.forEach((type, sketch) -> {
+            long[] exact = pool.stream().filter(t -> t.getType() == type)
+                    .mapToLong(LambdasDemo.Transaction::getAmountCents).sorted().toArray();
+            System.out.printf("  %-8s p50 $ %s (exact %s) | p99 $ %s (exact %s)%n", type,
+                    Money.format(sketch.quantile(0.50)), Money.format(exact[(int) (0.50 * (exact.length - 1))]),
+                    Money.format(sketch.quantile(0.99)), Money.format(exact[(int) (0.99 * (exact.length - 1))]));
+        });
+
+        // 3. Heavy hitters from the ingest path: store rows are fed as primitive ids
+        TransactionStore store = new TransactionStore();
+        HeavyHitters hitters = new HeavyHitters(1 << 12, 4, 10);
+        store.addListener((s, row) -> hitters.add(s.accountIdAt(row)));
+        store.appendAll(pool);
+        System.out.println("\nHeavy-hitter accounts (estimated txn count):");
+        hitters.top().stream().limit(5).forEach(e ->
+                System.out.printf("  %-7s ~%,d%n", store.accountName(e.getKey().intValue()), e.getValue()));
+        String heaviest = store.accountName(hitters.top().get(0).getKey().intValue());
+        System.out.println("  exact " + heaviest + ": " + pool.stream().filter(t -> t.getAccountId().equals(heaviest)).count());
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * STREAMING FRAUD DETECTION (Sliding Windows)
+ * -------------------------------------------
+ * The potentialFraud predicate in LambdasDemo looks at one transaction at a time
+ * over a finite List. This detector consumes an unbounded stream of transactions
+ * and keeps per-account time windows keyed off Transaction.getTimestamp():
+ *
+ * ✅ Debit velocity       – number of debits in the last N minutes
+ * ✅ Rolling debit volume – sum of debits in the last N minutes
+ * ✅ Transfer rate        – number of transfers in the last hour
+ * ✅ High-value debit     – the original single-transaction rule
+ *
+ * Every window is a ring buffer of (time, cents) pairs with a running sum: an
+ * event is pushed once and evicted once, so each update is O(1) amortized and
+ * detection latency does not depend on how much history has been seen.
+ *
+ * Accounts are encoded through an AccountSymbolTable, so the per-account state
+ * is an array indexed by account id rather than a map keyed by String.
+ *
+ * Events are expected in time order per account. A late event is counted as if
+ * it arrived at the newest time already seen for that account.
+ */
+public class StreamingFraudDetector {
+
+    enum Rule { HIGH_VALUE_DEBIT, DEBIT_VELOCITY, DEBIT_VOLUME, TRANSFER_RATE }
+
+    static final class Alert {
+        final String txnId;
+        final String accountId;
+        final Rule rule;
+        final long observed;
+
+        Alert(String txnId, String accountId, Rule rule, long observed) {
+            this.txnId = txnId;
+            this.accountId = accountId;
+            this.rule = rule;
+            this.observed = observed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s on %s (%s) observed=%d", rule, accountId, txnId, observed);
+        }
+    }
+
+    /** Thresholds; any value strictly above the limit raises an alert. */
+    static final class Limits {
+        long highValueDebitCents = 1_000_000L;   // $10,000.00 (same as isHighValue)
+        Duration debitWindow = Duration.ofMinutes(10);
+        int maxDebitsPerWindow = 5;
+        long maxDebitVolumeCents = 2_500_000L;   // $25,000.00
+        int maxTransfersPerHour = 3;
+    }
+
+    // ==========================================
+    // 1. SLIDING WINDOW (ring buffer + running sum)
+    // ==========================================
+
+    static final class SlidingWindow {
+        private final long widthMillis;
+        private long[] times = new long[8];
+        private long[] amounts = new long[8];
+        private int head;
+        private int count;
+        private long sum;
+
+        SlidingWindow(long widthMillis) {
+            this.widthMillis = widthMillis;
+        }
+
+        /** Adds an event and evicts everything at or before (time - width). */
+        void add(long time, long cents) {
+            if (count > 0) {
+                time = Math.max(time, times[(head + count - 1) & (times.length - 1)]);
+            }
+            evictUpTo(time - widthMillis);
+            if (count == times.length) {
+                grow();
+            }
+            int tail = (head + count) & (times.length - 1);
+            times[tail] = time;
+            amounts[tail] = cents;
+            count++;
+            sum += cents;
+        }
+
+        private void evictUpTo(long cutoff) {
+            while (count > 0 && times[head] <= cutoff) {
+                sum -= amounts[head];
+                head = (head + 1) & (times.length - 1);
+                count--;
+            }
+        }
+
+        private void grow() {
+            long[] newTimes = new long[times.length << 1];
+            long[] newAmounts = new long[amounts.length << 1];
+            for (int i = 0; i < count; i++) {
+                int from = (head + i) & (times.length - 1);
+                newTimes[i] = times[from];
+                newAmounts[i] = amounts[from];
+            }
+            times = newTimes;
+            amounts = newAmounts;
+            head = 0;
+        }
+
+        int count() { return count; }
+        long sum() { return sum; }
+
+        /** Live events oldest first, as (time, cents) pairs. */
+        void writeTo(DataOutput out) throws IOException {
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                int at = (head + i) & (times.length - 1);
+                out.writeLong(times[at]);
+                out.writeLong(amounts[at]);
+            }
+        }
+
+        void readFrom(ByteBuffer in) {
+            for (int n = in.getInt(); n > 0; n--) {
+                add(in.getLong(), in.getLong());
+            }
+        }
+    }
+
+    // ==========================================
+    // 2. PER-ACCOUNT STATE
+    // ==========================================
+
+    private static final class AccountWindows {
+        final SlidingWindow debits;
+        final SlidingWindow transfers;
+
+        AccountWindows(Limits limits) {
+            debits = new SlidingWindow(limits.debitWindow.toMillis());
+            transfers = new SlidingWindow(Duration.ofHours(1).toMillis());
+        }
+    }
+
+    private final AccountSymbolTable accounts;
+    private final Limits limits;
+    private final Consumer<Alert> alertSink;
+    private AccountWindows[] windows = new AccountWindows[64];
+    private long processed;
+    private long alerts;
+
+    public StreamingFraudDetector(Limits limits, Consumer<Alert> alertSink) {
+        this(new AccountSymbolTable(), limits, alertSink);
+    }
+
+    public StreamingFraudDetector(AccountSymbolTable accounts, Limits limits, Consumer<Alert> alertSink) {
+        this.accounts = accounts;
+        this.limits = limits;
+        this.alertSink = alertSink;
+    }
+
+    private AccountWindows windowsFor(int accountId) {
+        if (accountId >= windows.length) {
+            windows = Arrays.copyOf(windows, Math.max(accountId + 1, windows.length << 1));
+        }
+        AccountWindows w = windows[accountId];
+        if (w == null) {
+            w = new AccountWindows(limits);
+            windows[accountId] = w;
+        }
+        return w;
+    }
+
+    // ==========================================
+    // 3. EVENT PROCESSING
+    // ==========================================
+
+    /**
+     * Updates the account's windows with one transaction; returns true if any rule fired.
+     * Any id string is accepted and reported back unchanged in alerts.
+     */
+    public boolean accept(LambdasDemo.Transaction t) {
+        return accept(t.getId(), 0L, accounts.intern(t.getAccountId()), t.getAmountCents(), t.getType(),
+                TransactionStore.toEpochMillis(t.getTimestamp()));
+    }
+
+    /** Primitive path used by the columnar engine: no per-event objects unless an alert fires. */
+    public boolean accept(long txnId, int accountId, long cents, LambdasDemo.TxnType type, long time) {
+        return accept(null, txnId, accountId, cents, type, time);
+    }
+
+    /** 'txnIdText' is the caller's original id when there is one, otherwise the numeric id is formatted. */
+    private boolean accept(String txnIdText, long txnId, int accountId, long cents, LambdasDemo.TxnType type, long time) {
+        processed++;
+        AccountWindows w = windowsFor(accountId);
+        boolean fired = false;
+
+        switch (type) {
+            case DEBIT:
+                w.debits.add(time, cents);
+                if (cents > limits.highValueDebitCents) {
+                    fired |= raise(txnIdText, txnId, accountId, Rule.HIGH_VALUE_DEBIT, cents);
+                }
+                if (w.debits.count() > limits.maxDebitsPerWindow) {
+                    fired |= raise(txnIdText, txnId, accountId, Rule.DEBIT_VELOCITY, w.debits.count());
+                }
+                if (w.debits.sum() > limits.maxDebitVolumeCents) {
+                    fired |= raise(txnIdText, txnId, accountId, Rule.DEBIT_VOLUME, w.debits.sum());
+                }
+                break;
+            case TRANSFER:
+                w.transfers.add(time, cents);
+                if (w.transfers.count() > limits.maxTransfersPerHour) {
+                    fired |= raise(txnIdText, txnId, accountId, Rule.TRANSFER_RATE, w.transfers.count());
+                }
+                break;
+            default:
+                break;
+        }
+        return fired;
+    }
+
+    private boolean raise(String txnIdText, long txnId, int accountId, Rule rule, long observed) {
+        alerts++;
+        // Ids are turned back into strings only for the alert report
+        String id = txnIdText != null ? txnIdText : TransactionStore.formatTxnId(txnId);
+        alertSink.accept(new Alert(id, accounts.name(accountId), rule, observed));
+        return true;
+    }
+
+    public long processedCount() { return processed; }
+    public long alertCount() { return alerts; }
+
+    // ==========================================
+    // 4. CHECKPOINT STATE
+    // ==========================================
+
+    /** Writes counters and every account's live window events (see CheckpointedEngine). */
+    void writeState(DataOutput out) throws IOException {
+        out.writeLong(processed);
+        out.writeLong(alerts);
+        int live = 0;
+        for (AccountWindows w : windows) {
+            live += w != null ? 1 : 0;
+        }
+        out.writeInt(live);
+        for (int id = 0; id < windows.length; id++) {
+            if (windows[id] != null) {
+                out.writeInt(id);
+                windows[id].debits.writeTo(out);
+                windows[id].transfers.writeTo(out);
+            }
+        }
+    }
+
+    /** Restores state written by writeState(); only valid on a detector that has seen no events. */
+    void readState(ByteBuffer in) {
+        if (processed != 0) {
+            throw new IllegalStateException("Detector already has state");
+        }
+        processed = in.getLong();
+        alerts = in.getLong();
+        for (int n = in.getInt(); n > 0; n--) {
+            AccountWindows w = windowsFor(in.getInt());
+            w.debits.readFrom(in);
+            w.transfers.readFrom(in);
+        }
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> STREAMING FRAUD DETECTION <<<\n");
+
+        StreamingFraudDetector detector = new StreamingFraudDetector(new Limits(),
+                alert -> System.out.println("ALERT: " + alert));
+
+        // Replay the mock pool, then an account that starts draining funds in small debits
+        LambdasDemo.samplePool().forEach(detector::accept);
+
+        LocalDateTime start = LocalDateTime.of(2024, 1, 15, 9, 0);
+        Random rnd = new Random(42);
+        int seq = 200;
+        for (int minute = 0; minute < 90; minute++) {
+            LocalDateTime now = start.plusMinutes(minute);
+            detector.accept(new LambdasDemo.Transaction("TXN_" + seq++, "ACC_B", 50 + rnd.nextInt(200),
+                    LambdasDemo.TxnType.CREDIT, now));
+            if (minute >= 82) {
+                detector.accept(new LambdasDemo.Transaction("TXN_" + seq++, "ACC_M", 4_900.00,
+                        LambdasDemo.TxnType.DEBIT, now));
+            }
+            if (minute % 12 == 0) {
+                detector.accept(new LambdasDemo.Transaction("TXN_" + seq++, "ACC_T", 750.00,
+                        LambdasDemo.TxnType.TRANSFER, now));
+            }
+        }
+
+        // Ids from other feeds need not be TXN_<number>: they are reported exactly as given
+        detector.accept(new LambdasDemo.Transaction("WIRE-000917", "ACC_W", 12_500.00,
+                LambdasDemo.TxnType.DEBIT, start.plusMinutes(90)));
+
+        System.out.println("\nProcessed " + detector.processedCount() + " events, raised "
+                + detector.alertCount() + " alerts.");
+    }
+}
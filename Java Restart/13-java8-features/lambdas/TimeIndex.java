@@ -0,0 +1,294 @@
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * TIME-PARTITIONED TRANSACTION INDEX
+ * ----------------------------------
+ * Transactions carry a timestamp, but every time-based question used to be a
+ * full stream() over the pool. This index partitions TransactionStore rows into
+ * fixed-width time buckets (1 minute by default):
+ *
+ * ✅ Append-friendly: in-order rows go to the newest bucket in O(1); late rows
+ *    find their bucket by binary search
+ * ✅ Range queries only open buckets that overlap [from, to]; only the two edge
+ *    buckets check timestamps row by row
+ * ✅ Each bucket keeps its running volume and count, so "volume per minute"
+ *    over interior buckets is O(1) per bucket
+ * ✅ sealBefore(t) freezes old buckets and compacts them: rows are re-laid out
+ *    grouped by account, so "account X between t1 and t2" becomes a binary search
+ *    plus a contiguous slice per bucket
+ *
+ * Like TransactionStore, the index is single-writer. Rows older than the seal
+ * watermark are rejected (IllegalStateException) because sealed buckets are immutable.
+ */
+public class TimeIndex {
+
+    // ==========================================
+    // 1. BUCKET
+    // ==========================================
+
+    static final class Bucket {
+        final long start;
+        int[] rows = new int[32];
+        int count;
+        long volumeCents;
+
+        // Filled in by seal(): rows sorted by account, slice of account a = rows[offsets[i]..offsets[i+1])
+        int[] sealedAccounts;
+        int[] sealedOffsets;
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        boolean sealed() {
+            return sealedAccounts != null;
+        }
+
+        void add(int row, long cents) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count << 1);
+            }
+            rows[count++] = row;
+            volumeCents = Money.add(volumeCents, cents);
+        }
+
+        /** Compacts to exact size and groups rows by account (stable, so time order is kept). */
+        void seal(TransactionStore store) {
+            // Sort (account, position) pairs packed into longs: no boxing, and ties keep arrival order
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = ((long) store.accountIdAt(rows[i]) << 32) | i;
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[count];
+            int[] accounts = new int[count];
+            int[] offsets = new int[count + 1];
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                sorted[i] = rows[(int) keys[i]];
+                int account = (int) (keys[i] >>> 32);
+                if (distinct == 0 || accounts[distinct - 1] != account) {
+                    accounts[distinct] = account;
+                    offsets[distinct] = i;
+                    distinct++;
+                }
+            }
+            offsets[distinct] = count;
+            rows = sorted;
+            sealedAccounts = Arrays.copyOf(accounts, distinct);
+            sealedOffsets = Arrays.copyOf(offsets, distinct + 1);
+        }
+    }
+
+    /** Cap on volumePerBucket() slots (8 MB of longs; about 2 years of 1-minute buckets). */
+    static final int MAX_RANGE_BUCKETS = 1 << 20;
+
+    private final TransactionStore store;
+    private final long bucketMillis;
+    private final List<Bucket> buckets = new ArrayList<>();
+    private long sealedUntil = Long.MIN_VALUE;
+
+    public TimeIndex(TransactionStore store) {
+        this(store, 60_000L);
+    }
+
+    public TimeIndex(TransactionStore store, long bucketMillis) {
+        this.store = store;
+        this.bucketMillis = bucketMillis;
+    }
+
+    // ==========================================
+    // 2. INGEST
+    // ==========================================
+
+    /** Indexes one store row; call after TransactionStore.append(). */
+    public void add(int row) {
+        long time = store.timestamp(row);
+        if (time < sealedUntil) {
+            throw new IllegalStateException("Row " + row + " is older than the sealed watermark");
+        }
+        long start = Math.floorDiv(time, bucketMillis) * bucketMillis;
+        Bucket bucket;
+        int n = buckets.size();
+        if (n > 0 && buckets.get(n - 1).start == start) {
+            bucket = buckets.get(n - 1);                    // common case: in-order data
+        } else {
+            int pos = find(start);
+            if (pos >= 0) {
+                bucket = buckets.get(pos);
+            } else {
+                bucket = new Bucket(start);
+                buckets.add(-pos - 1, bucket);
+            }
+        }
+        bucket.add(row, store.amountCents(row));
+    }
+
+    /** Indexes every store row from 'fromRow' onwards. */
+    public void addAll(int fromRow) {
+        for (int row = fromRow; row < store.size(); row++) {
+            add(row);
+        }
+    }
+
+    /** Binary search by bucket start; negative (-(insertion point) - 1) when absent. */
+    private int find(long start) {
+        int lo = 0;
+        int hi = buckets.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long s = buckets.get(mid).start;
+            if (s < start) {
+                lo = mid + 1;
+            } else if (s > start) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /** Index of the first bucket that may contain 'time'. */
+    private int firstBucketFor(long time) {
+        int pos = find(Math.floorDiv(time, bucketMillis) * bucketMillis);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    // ==========================================
+    // 3. QUERIES
+    // ==========================================
+
+    /** Calls 'action' for each row of the account with from <= timestamp <= to. */
+    public void forEachInRange(int accountId, long from, long to, IntConsumer action) {
+        for (int b = firstBucketFor(from); b < buckets.size(); b++) {
+            Bucket bucket = buckets.get(b);
+            if (bucket.start > to) {
+                break;
+            }
+            boolean interior = bucket.start >= from && bucket.start + bucketMillis - 1 <= to;
+            int lo = 0;
+            int hi = bucket.count;
+            if (bucket.sealed()) {
+                int i = Arrays.binarySearch(bucket.sealedAccounts, accountId);
+                if (i < 0) {
+                    continue;
+                }
+                lo = bucket.sealedOffsets[i];
+                hi = bucket.sealedOffsets[i + 1];
+            }
+            for (int k = lo; k < hi; k++) {
+                int row = bucket.rows[k];
+                if (!bucket.sealed() && store.accountIdAt(row) != accountId) {
+                    continue;
+                }
+                if (interior || (store.timestamp(row) >= from && store.timestamp(row) <= to)) {
+                    action.accept(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Volume per bucket for from <= timestamp <= to. Slot i covers the bucket starting
+     * at floor(from) + i * bucketMillis; interior buckets use their stored running total.
+     * At most MAX_RANGE_BUCKETS slots are returned; wider ranges are rejected.
+     */
+    public long[] volumePerBucket(long from, long to) {
+        if (to < from) {
+            throw new IllegalArgumentException("Range end " + to + " is before its start " + from);
+        }
+        long firstIndex = Math.floorDiv(from, bucketMillis);
+        long span = Math.floorDiv(to, bucketMillis) - firstIndex + 1;     // > 0 unless it overflowed
+        if (span <= 0 || span > MAX_RANGE_BUCKETS) {
+            throw new IllegalArgumentException("Range [" + from + ", " + to + "] spans more than "
+                    + MAX_RANGE_BUCKETS + " buckets of " + bucketMillis + " ms");
+        }
+        long[] volume = new long[(int) span];
+        for (int b = firstBucketFor(from); b < buckets.size(); b++) {
+            Bucket bucket = buckets.get(b);
+            if (bucket.start > to) {
+                break;
+            }
+            int slot = (int) (Math.floorDiv(bucket.start, bucketMillis) - firstIndex);
+            if (bucket.start >= from && bucket.start + bucketMillis - 1 <= to) {
+                volume[slot] = bucket.volumeCents;
+            } else {
+                for (int k = 0; k < bucket.count; k++) {
+                    long time = store.timestamp(bucket.rows[k]);
+                    if (time >= from && time <= to) {
+                        volume[slot] = Money.add(volume[slot], store.amountCents(bucket.rows[k]));
+                    }
+                }
+            }
+        }
+        return volume;
+    }
+
+    // ==========================================
+    // 4. SEALING / COMPACTION
+    // ==========================================
+
+    /** Seals and compacts every bucket that ends at or before 'time'; returns how many were sealed. */
+    public int sealBefore(long time) {
+        int sealed = 0;
+        for (Bucket bucket : buckets) {
+            if (bucket.start + bucketMillis > time) {
+                break;
+            }
+            if (!bucket.sealed()) {
+                bucket.seal(store);
+                sealed++;
+            }
+        }
+        sealedUntil = Math.max(sealedUntil, Math.floorDiv(time, bucketMillis) * bucketMillis);
+        return sealed;
+    }
+
+    public int bucketCount() { return buckets.size(); }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> TIME-PARTITIONED TRANSACTION INDEX <<<\n");
+
+        AccountSymbolTable accounts = new AccountSymbolTable();
+        TransactionStore store = new TransactionStore(accounts, 1 << 20);
+        TimeIndex index = new TimeIndex(store);
+
+        long dayStart = 1_705_276_800_000L;       // 2024-01-15T00:00Z
+        Random rnd = new Random(9);
+        LambdasDemo.TxnType[] types = LambdasDemo.TxnType.values();
+        for (int a = 0; a < 1_000; a++) {
+            accounts.intern("ACC_" + a);
+        }
+        for (int i = 0; i < 1_000_000; i++) {
+            long time = dayStart + i * 86L;       // ~1 day of traffic
+            int row = store.append(i, rnd.nextInt(accounts.size()), 100 + rnd.nextInt(1_000_000),
+                    types[rnd.nextInt(types.length)], time);
+            index.add(row);
+        }
+        System.out.println("Indexed " + store.size() + " rows into " + index.bucketCount() + " one-minute buckets");
+
+        long from = dayStart + 9 * 3_600_000L + 30_000;   // 09:00:30
+        long to = dayStart + 9 * 3_600_000L + 299_999;    // 09:04:59.999
+        int account = accounts.idOf("ACC_42");
+
+        long[] count = new long[1];
+        index.forEachInRange(account, from, to, row -> count[0]++);
+        System.out.println("ACC_42 between 09:00:30 and 09:05: " + count[0] + " txns");
+
+        long[] perMinute = index.volumePerBucket(from, to);
+        for (int m = 0; m < perMinute.length; m++) {
+            System.out.println("  09:0" + m + " volume $ " + Money.format(perMinute[m]));
+        }
+
+        int sealed = index.sealBefore(dayStart + 12 * 3_600_000L);
+        long[] again = new long[1];
+        index.forEachInRange(account, from, to, row -> again[0]++);
+        System.out.println("\nSealed " + sealed + " buckets before noon; same query after compaction: " + again[0] + " txns");
+    }
+}
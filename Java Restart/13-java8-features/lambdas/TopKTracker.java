@@ -0,0 +1,182 @@
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * STREAMING TOP-K RISK TRACKER
+ * ----------------------------
+ * highestRiskTransfer in LambdasDemo re-scans the whole pool with
+ * max(Comparator.comparing(Transaction::getAmount)) every time it is asked.
+ * This tracker keeps the K largest transactions as they arrive:
+ *
+ * ✅ Globally, per TxnType and per account
+ * ✅ Each view is a bounded min-heap keyed on long cents: O(log K) per admitted
+ *    transaction, O(1) lock-free rejection when the amount is not above the
+ *    current K-th largest (a volatile threshold is checked before the heap lock)
+ * ✅ top() copies at most K entries, never touches the pool
+ *
+ * Heaps are individually synchronized, so several ingest threads may call offer().
+ */
+public class TopKTracker {
+
+    // ==========================================
+    // 1. BOUNDED MIN-HEAP (long key + payload)
+    // ==========================================
+
+    static final class BoundedTopK {
+        private final int capacity;
+        private final long[] keys;
+        private final LambdasDemo.Transaction[] values;
+        private int size;
+        // keys[0] once the heap is full, else MIN_VALUE; it only grows, so a stale read never rejects wrongly
+        private volatile long threshold = Long.MIN_VALUE;
+
+        BoundedTopK(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Top-K capacity must be positive: " + capacity);
+            }
+            this.capacity = capacity;
+            this.keys = new long[capacity];
+            this.values = new LambdasDemo.Transaction[capacity];
+        }
+
+        void offer(long cents, LambdasDemo.Transaction t) {
+            if (cents <= threshold) {
+                return;                     // rejected without taking the monitor
+            }
+            synchronized (this) {
+                if (size < capacity) {
+                    keys[size] = cents;
+                    values[size] = t;
+                    siftUp(size++);
+                } else if (cents > keys[0]) {   // beats the smallest of the current top K
+                    keys[0] = cents;
+                    values[0] = t;
+                    siftDown(0);
+                } else {
+                    return;
+                }
+                if (size == capacity) {
+                    threshold = keys[0];
+                }
+            }
+        }
+
+        /** Current contents, largest amount first. */
+        synchronized List<LambdasDemo.Transaction> top() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(keys[b], keys[a]));
+            List<LambdasDemo.Transaction> result = new ArrayList<>(size);
+            for (int i : order) {
+                result.add(values[i]);
+            }
+            return result;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= keys[i]) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) {
+                    return;
+                }
+                int smallest = left + 1 < size && keys[left + 1] < keys[left] ? left + 1 : left;
+                if (keys[i] <= keys[smallest]) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long k = keys[a];
+            keys[a] = keys[b];
+            keys[b] = k;
+            LambdasDemo.Transaction v = values[a];
+            values[a] = values[b];
+            values[b] = v;
+        }
+    }
+
+    // ==========================================
+    // 2. TRACKER (global / per type / per account)
+    // ==========================================
+
+    private final int perAccountK;
+    private final BoundedTopK global;
+    private final EnumMap<LambdasDemo.TxnType, BoundedTopK> byType = new EnumMap<>(LambdasDemo.TxnType.class);
+    private final ConcurrentHashMap<String, BoundedTopK> byAccount = new ConcurrentHashMap<>();
+
+    public TopKTracker(int k, int perAccountK) {
+        if (perAccountK < 1) {      // per-account heaps are created lazily: fail here, not on first offer()
+            throw new IllegalArgumentException("Per-account K must be positive: " + perAccountK);
+        }
+        this.perAccountK = perAccountK;
+        this.global = new BoundedTopK(k);
+        for (LambdasDemo.TxnType type : LambdasDemo.TxnType.values()) {
+            byType.put(type, new BoundedTopK(k));
+        }
+    }
+
+    public void offer(LambdasDemo.Transaction t) {
+        long cents = t.getAmountCents();
+        global.offer(cents, t);
+        byType.get(t.getType()).offer(cents, t);
+        byAccount.computeIfAbsent(t.getAccountId(), k -> new BoundedTopK(perAccountK)).offer(cents, t);
+    }
+
+    public List<LambdasDemo.Transaction> topGlobal() { return global.top(); }
+    public List<LambdasDemo.Transaction> topByType(LambdasDemo.TxnType type) { return byType.get(type).top(); }
+
+    public List<LambdasDemo.Transaction> topByAccount(String accountId) {
+        BoundedTopK heap = byAccount.get(accountId);
+        return heap == null ? Collections.emptyList() : heap.top();
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> STREAMING TOP-K RISK TRACKER <<<\n");
+
+        TopKTracker tracker = new TopKTracker(100, 3);
+        LambdasDemo.samplePool().forEach(tracker::offer);
+
+        Random rnd = new Random(11);
+        LambdasDemo.TxnType[] types = LambdasDemo.TxnType.values();
+        for (int i = 0; i < 200_000; i++) {
+            tracker.offer(new LambdasDemo.Transaction("TXN_" + (1_000 + i), "ACC_" + (char) ('A' + rnd.nextInt(5)),
+                    rnd.nextInt(150_000), types[rnd.nextInt(types.length)]));
+        }
+
+        System.out.println("--- Top 3 Transfers (no rescan) ---");
+        tracker.topByType(LambdasDemo.TxnType.TRANSFER).stream().limit(3).forEach(System.out::println);
+
+        System.out.println("\n--- Top 3 for ACC_A ---");
+        tracker.topByAccount("ACC_A").forEach(System.out::println);
+
+        // Same answer LambdasDemo computes with a full scan + RiskAnalyzer
+        BigDecimal limit = new BigDecimal("100000");
+        tracker.topByType(LambdasDemo.TxnType.TRANSFER).stream()
+            .filter(t -> t.getAmount().compareTo(limit) > 0)
+            .findFirst()
+            .ifPresent(t -> System.out.println("\nCRITICAL: Highest Value Transfer Detected: " + t));
+
+        System.out.println("Global top-100 size: " + tracker.topGlobal().size());
+    }
+}
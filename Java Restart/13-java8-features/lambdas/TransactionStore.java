@@ -0,0 +1,433 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * COLUMNAR TRANSACTION STORE (Struct-of-Arrays)
+ * ---------------------------------------------
+ * A {@link LambdasDemo.Transaction} object costs well over 150 bytes once the
+ * BigDecimal, the account String and the LocalDateTime are counted, and a
+ * List of them is a graph of pointers the CPU has to chase row by row.
+ *
+ * This store keeps one primitive array per field instead:
+ *
+ * ✅ long  amountCents  – Money minor units (2 decimals, HALF_EVEN applied on ingest)
+ * ✅ int   accountIds   – dense id per account string
+ * ✅ int   counterpartyIds – destination account of a TRANSFER, -1 otherwise
+ * ✅ byte  types        – TxnType ordinal
+ * ✅ byte  statuses     – TxnStatus ordinal
+ * ✅ long  timestamps   – epoch millis (UTC)
+ * ✅ long  txnIds       – numeric part of "TXN_nnn"
+ *
+ * Transaction ids must be canonical, "TXN_" then a decimal number without sign or
+ * leading zeros (TXN_0, TXN_7, TXN_1024), so that the numeric column formats back
+ * to exactly the id that was appended. Anything else (TXN_007, TXN_ABC, TXN_-5)
+ * is rejected with IllegalArgumentException instead of being stored under a
+ * different id; callers with free-form ids keep them as Strings.
+ *
+ * A full scan (fraud, reconciliation, group-by-account) walks contiguous
+ * arrays, roughly 34 bytes per row, with no object dereferences.
+ * The store is single-writer; readers must not run concurrently with append().
+ */
+public class TransactionStore {
+
+    static final String TXN_PREFIX = "TXN_";
+
+    private static final LambdasDemo.TxnType[] TYPES = LambdasDemo.TxnType.values();
+    private static final LambdasDemo.TxnStatus[] STATUSES = LambdasDemo.TxnStatus.values();
+    private static final VarHandle STATUS_CELL = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private long[] txnIds;
+    private int[] accountIds;
+    private int[] counterpartyIds;
+    private long[] amountCents;
+    private byte[] types;
+    private byte[] statuses;
+    private long[] timestamps;
+    private int size;
+
+    // Account dictionary: String -> dense int id, and back again for reports
+    private final AccountSymbolTable accounts;
+
+    public TransactionStore() {
+        this(new AccountSymbolTable(), 1024);
+    }
+
+    /** Stores sharing one symbol table agree on account ids, so their results can be merged. */
+    public TransactionStore(AccountSymbolTable accounts, int initialCapacity) {
+        this.accounts = accounts;
+        int capacity = Math.max(16, initialCapacity);
+        txnIds = new long[capacity];
+        accountIds = new int[capacity];
+        counterpartyIds = new int[capacity];
+        amountCents = new long[capacity];
+        types = new byte[capacity];
+        statuses = new byte[capacity];
+        timestamps = new long[capacity];
+    }
+
+    // ==========================================
+    // 1. INGEST
+    // ==========================================
+
+    /** Copies a Transaction into the columns and returns its row number. */
+    public int append(LambdasDemo.Transaction t) {
+        return appendRow(parseTxnId(t.getId()),
+                         accountId(t.getAccountId()),
+                         t.getCounterpartyId() == null ? -1 : accountId(t.getCounterpartyId()),
+                         t.getAmountCents(),
+                         t.getType(),
+                         toEpochMillis(t.getTimestamp()),
+                         t.getStatus());
+    }
+
+    /** Primitive ingest path: no objects are created per row. */
+    public int append(long txnId, int accountId, long cents, LambdasDemo.TxnType type, long epochMillis) {
+        return appendRow(txnId, accountId, -1, cents, type, epochMillis, LambdasDemo.TxnStatus.PENDING);
+    }
+
+    /** Primitive ingest path for transfers; counterpartyId is the destination account id. */
+    public int append(long txnId, int accountId, int counterpartyId, long cents, LambdasDemo.TxnType type,
+                      long epochMillis) {
+        return appendRow(txnId, accountId, counterpartyId, cents, type, epochMillis, LambdasDemo.TxnStatus.PENDING);
+    }
+
+    private int appendRow(long txnId, int accountId, int counterpartyId, long cents, LambdasDemo.TxnType type,
+                          long epochMillis, LambdasDemo.TxnStatus status) {
+        if (accountId < 0 || accountId >= accounts.size()) {
+            throw new IllegalArgumentException("Unknown account id: " + accountId);
+        }
+        if (counterpartyId < -1 || counterpartyId >= accounts.size()) {
+            throw new IllegalArgumentException("Unknown counterparty id: " + counterpartyId);
+        }
+        ensureCapacity(size + 1);
+        int row = size++;
+        txnIds[row] = txnId;
+        accountIds[row] = accountId;
+        counterpartyIds[row] = counterpartyId;
+        amountCents[row] = cents;
+        types[row] = (byte) type.ordinal();
+        statuses[row] = (byte) status.ordinal();
+        timestamps[row] = epochMillis;
+        for (RowListener listener : listeners) {
+            listener.onAppend(this, row);
+        }
+        return row;
+    }
+
+    public void appendAll(Collection<LambdasDemo.Transaction> txns) {
+        ensureCapacity(size + txns.size());
+        for (LambdasDemo.Transaction t : txns) {
+            append(t);
+        }
+    }
+
+    /** Bulk-appends every row of another store that shares this store's symbol table. */
+    public void appendAll(TransactionStore other) {
+        if (other.accounts != accounts) {
+            throw new IllegalArgumentException("Stores must share one AccountSymbolTable to be merged");
+        }
+        int n = other.size;
+        ensureCapacity(size + n);
+        System.arraycopy(other.txnIds, 0, txnIds, size, n);
+        System.arraycopy(other.accountIds, 0, accountIds, size, n);
+        System.arraycopy(other.counterpartyIds, 0, counterpartyIds, size, n);
+        System.arraycopy(other.amountCents, 0, amountCents, size, n);
+        System.arraycopy(other.types, 0, types, size, n);
+        System.arraycopy(other.statuses, 0, statuses, size, n);
+        System.arraycopy(other.timestamps, 0, timestamps, size, n);
+        int first = size;
+        size += n;
+        for (RowListener listener : listeners) {
+            for (int row = first; row < size; row++) {
+                listener.onAppend(this, row);
+            }
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= txnIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, txnIds.length + (txnIds.length >> 1));
+        txnIds = Arrays.copyOf(txnIds, capacity);
+        accountIds = Arrays.copyOf(accountIds, capacity);
+        counterpartyIds = Arrays.copyOf(counterpartyIds, capacity);
+        amountCents = Arrays.copyOf(amountCents, capacity);
+        types = Arrays.copyOf(types, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+    }
+
+    // ==========================================
+    // 1b. CHANGE LISTENERS (indexes, materialized views)
+    // ==========================================
+
+    /**
+     * Notified after a row is appended (writer thread) and after a successful
+     * status CAS (whichever thread won it, so implementations must be thread-safe).
+     * The CAS path takes no lock, so two changes of one row made by different
+     * threads may be delivered in either order. Each successful CAS is delivered
+     * exactly once with the from -> to pair it won: listeners apply it as a delta
+     * that commutes with the row's other deltas (counts, sums), or re-read
+     * store.status(row) instead of trusting the order.
+     */
+    interface RowListener {
+        void onAppend(TransactionStore store, int row);
+
+        default void onStatusChange(TransactionStore store, int row,
+                                    LambdasDemo.TxnStatus from, LambdasDemo.TxnStatus to) { }
+    }
+
+    private volatile RowListener[] listeners = new RowListener[0];
+
+    /** Registers a listener before concurrent status changes start; rows already in the store are not replayed. */
+    public synchronized void addListener(RowListener listener) {
+        RowListener[] next = Arrays.copyOf(listeners, listeners.length + 1);
+        next[listeners.length] = listener;
+        listeners = next;
+    }
+
+    // ==========================================
+    // 2. ACCOUNT DICTIONARY
+    // ==========================================
+
+    /** Returns the dense id for an account, assigning the next id on first sight. */
+    public int accountId(String account) { return accounts.intern(account); }
+
+    public String accountName(int accountId) { return accounts.name(accountId); }
+    public int accountCount() { return accounts.size(); }
+    public AccountSymbolTable accounts() { return accounts; }
+
+    // ==========================================
+    // 3. ROW ACCESS
+    // ==========================================
+
+    public int size() { return size; }
+    public long txnId(int row) { return txnIds[row]; }
+    public int accountIdAt(int row) { return accountIds[row]; }
+    public int counterpartyIdAt(int row) { return counterpartyIds[row]; }
+    public long amountCents(int row) { return amountCents[row]; }
+    public LambdasDemo.TxnType type(int row) { return TYPES[types[row]]; }
+    public LambdasDemo.TxnStatus status(int row) { return STATUSES[statuses[row]]; }
+    public long timestamp(int row) { return timestamps[row]; }
+
+    /**
+     * Lock-free status change on the byte column, with the same transition rules as
+     * Transaction. Safe to call from many threads while no append() is running.
+     * Listeners are told about the transition this call won (see RowListener for
+     * ordering).
+     */
+    public boolean compareAndSetStatus(int row, LambdasDemo.TxnStatus expected, LambdasDemo.TxnStatus next) {
+        if (!expected.canTransitionTo(next)) {
+            throw new IllegalStateException("Illegal status transition " + expected + " -> " + next);
+        }
+        if (!STATUS_CELL.compareAndSet(statuses, row, (byte) expected.ordinal(), (byte) next.ordinal())) {
+            return false;
+        }
+        for (RowListener listener : listeners) {
+            listener.onStatusChange(this, row, expected, next);
+        }
+        return true;
+    }
+
+    public void setStatus(int row, LambdasDemo.TxnStatus next) {
+        while (!compareAndSetStatus(row, status(row), next)) {
+            // lost a race: re-read and re-validate
+        }
+    }
+
+    /** Rebuilds an object view of one row, for reports and interop only. */
+    public LambdasDemo.Transaction materialize(int row) {
+        LambdasDemo.Transaction t = new LambdasDemo.Transaction(
+                formatTxnId(txnIds[row]),
+                accounts.name(accountIds[row]),
+                counterpartyIds[row] < 0 ? null : accounts.name(counterpartyIds[row]),
+                Money.toBigDecimal(amountCents[row]).doubleValue(),
+                type(row),
+                LocalDateTime.ofEpochSecond(Math.floorDiv(timestamps[row], 1000L),
+                        (int) Math.floorMod(timestamps[row], 1000L) * 1_000_000, ZoneOffset.UTC));
+        if (statuses[row] != (byte) LambdasDemo.TxnStatus.PENDING.ordinal()) {
+            t.setStatus(status(row));
+        }
+        return t;
+    }
+
+    // ==========================================
+    // 4. QUERIES (same questions as LambdasDemo.main)
+    // ==========================================
+
+    /**
+     * Security audit: flags every PENDING row of the given type whose amount is
+     * strictly above the threshold and returns the rows this call flagged.
+     */
+    public int[] flagAbove(long thresholdCents, LambdasDemo.TxnType type) {
+        byte typeCode = (byte) type.ordinal();
+        int[] hits = new int[16];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (types[row] == typeCode && amountCents[row] > thresholdCents
+                    && compareAndSetStatus(row, LambdasDemo.TxnStatus.PENDING, LambdasDemo.TxnStatus.FLAGGED)) {
+                if (count == hits.length) {
+                    hits = Arrays.copyOf(hits, count << 1);
+                }
+                hits[count++] = row;
+            }
+        }
+        return Arrays.copyOf(hits, count);
+    }
+
+    /** Reconciliation: total volume across all rows, in cents. */
+    public long totalVolumeCents() {
+        long total = 0;
+        for (int row = 0; row < size; row++) {
+            total = Money.add(total, amountCents[row]);
+        }
+        return total;
+    }
+
+    /** Net position per account (debits negative), indexed by account id. */
+    public long[] netPositionByAccount() {
+        long[] positions = new long[accounts.size()];
+        byte debit = (byte) LambdasDemo.TxnType.DEBIT.ordinal();
+        for (int row = 0; row < size; row++) {
+            long cents = amountCents[row];
+            int account = accountIds[row];
+            positions[account] = types[row] == debit
+                    ? Money.subtract(positions[account], cents)
+                    : Money.add(positions[account], cents);
+        }
+        return positions;
+    }
+
+    /** Group by account as a counting sort: rows of account a are rows[offsets[a] .. offsets[a+1]). */
+    public AccountGroups groupByAccount() {
+        int accountCount = accounts.size();
+        int[] offsets = new int[accountCount + 1];
+        for (int row = 0; row < size; row++) {
+            offsets[accountIds[row] + 1]++;
+        }
+        for (int a = 0; a < accountCount; a++) {
+            offsets[a + 1] += offsets[a];
+        }
+        int[] cursor = Arrays.copyOf(offsets, accountCount);
+        int[] rows = new int[size];
+        for (int row = 0; row < size; row++) {
+            rows[cursor[accountIds[row]]++] = row;
+        }
+        return new AccountGroups(offsets, rows);
+    }
+
+    /** Row with the highest amount of the given type above the limit, or -1 when none qualifies. */
+    public int maxAmountRow(LambdasDemo.TxnType type, long limitCents) {
+        byte typeCode = (byte) type.ordinal();
+        int best = -1;
+        for (int row = 0; row < size; row++) {
+            if (types[row] == typeCode && amountCents[row] > limitCents
+                    && (best < 0 || amountCents[row] > amountCents[best])) {
+                best = row;
+            }
+        }
+        return best;
+    }
+
+    static final class AccountGroups {
+        private final int[] offsets;
+        private final int[] rows;
+
+        AccountGroups(int[] offsets, int[] rows) {
+            this.offsets = offsets;
+            this.rows = rows;
+        }
+
+        int accountCount() { return offsets.length - 1; }
+        int groupSize(int accountId) { return offsets[accountId + 1] - offsets[accountId]; }
+        int row(int accountId, int i) { return rows[offsets[accountId] + i]; }
+    }
+
+    // ==========================================
+    // 5. CONVERSIONS
+    // ==========================================
+
+    static long toEpochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /** Numeric part of a canonical id; formatTxnId(parseTxnId(id)) always equals id. */
+    static long parseTxnId(String id) {
+        if (!isCanonicalTxnId(id)) {
+            throw new IllegalArgumentException(
+                    "Transaction id must be TXN_ plus a number without sign or leading zeros: " + id);
+        }
+        try {
+            return Long.parseLong(id, TXN_PREFIX.length(), id.length(), 10);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Transaction id out of range: " + id, e);
+        }
+    }
+
+    /** True if parseTxnId accepts the shape of 'id' (it may still be out of range). */
+    static boolean isCanonicalTxnId(String id) {
+        return id != null && id.startsWith(TXN_PREFIX) && isCanonicalNumber(id, TXN_PREFIX.length());
+    }
+
+    private static boolean isCanonicalNumber(String s, int from) {
+        if (from == s.length() || (s.charAt(from) == '0' && s.length() > from + 1)) {
+            return false;
+        }
+        for (int i = from; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String formatTxnId(long txnId) {
+        return TXN_PREFIX + txnId;
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> COLUMNAR TRANSACTION STORE <<<\n");
+
+        TransactionStore store = new TransactionStore();
+        store.appendAll(LambdasDemo.samplePool());
+
+        System.out.println("--- 1. SECURITY AUDIT (Flagging High Risk) ---");
+        for (int row : store.flagAbove(1_000_000L, LambdasDemo.TxnType.DEBIT)) {
+            System.out.println("ALERT: Flagging Transaction for Review -> " + formatTxnId(store.txnId(row)));
+        }
+
+        System.out.println("\n--- 2. RECONCILIATION (Total Volume) ---");
+        System.out.println("Total Transaction Volume: $ " + Money.format(store.totalVolumeCents()));
+
+        System.out.println("\n--- 3. ACCOUNT ANALYTICS (Group by Account) ---");
+        long[] positions = store.netPositionByAccount();
+        AccountGroups groups = store.groupByAccount();
+        for (int a = 0; a < positions.length; a++) {
+            System.out.printf("Account: %-6s | Txns: %d | Net Position: $ %s%n",
+                    store.accountName(a), groups.groupSize(a), Money.format(positions[a]));
+        }
+
+        System.out.println("\n--- 3b. ID CONTRACT ---");
+        for (String id : new String[] {"TXN_007", "TXN_ABC"}) {
+            try {
+                store.append(new LambdasDemo.Transaction(id, "ACC_A", 1.00, LambdasDemo.TxnType.FEE));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Rejected: " + e.getMessage());
+            }
+        }
+
+        System.out.println("\n--- 4. RISK ANALYSIS (Highest Transfer) ---");
+        int row = store.maxAmountRow(LambdasDemo.TxnType.TRANSFER, 10_000_000L);
+        if (row >= 0) {
+            System.out.println("CRITICAL: Highest Value Transfer Detected: " + store.materialize(row));
+        }
+    }
+}
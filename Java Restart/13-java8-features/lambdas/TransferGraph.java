@@ -0,0 +1,356 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * INCREMENTAL TRANSFER GRAPH (Circular Flow / Layering Detection)
+ * ---------------------------------------------------------------
+ * Layering moves money through a chain of accounts and often back to where it
+ * started (A -> B -> C -> A), or splits it across many mule accounts (fan-out)
+ * and collects it again (fan-in). Finding that in a batch job means joining every
+ * transfer with every other. This index keeps the transfer edges as an adjacency
+ * structure updated on each TRANSFER row and checks only around the new edge:
+ *
+ * ✅ Per-account out/in edge lists, newest first (linked through arrays);
+ *    a walk stops at the first edge older than the window
+ * ✅ Edges live in a ring: edges that fall out of the window are evicted as new
+ *    ones arrive, so memory follows the window, not the whole history; at most
+ *    maxEdges are kept, the oldest dropped first even if still inside the window
+ * ✅ Cycle check: is there a time-ordered path dst -> ... -> src of at most
+ *    maxCycleLength - 1 earlier edges inside the window?
+ * ✅ Fan-out / fan-in: distinct destinations of src / sources of dst in the window;
+ *    fires when a new counterparty takes the count past the limit, not on repeats
+ * ✅ Bounded work: each new edge expands at most 'edgeBudget' edges, so a hub
+ *    account cannot make one insert expensive
+ *
+ * Registered as a TransactionStore.RowListener it sees every TRANSFER row with a
+ * counterparty. Like TransactionStore it is single-writer, and transfers are
+ * expected roughly in time order.
+ */
+public class TransferGraph implements TransactionStore.RowListener {
+
+    enum Pattern { CYCLE, FAN_OUT, FAN_IN }
+
+    static final class Alert {
+        final Pattern pattern;
+        final String txnId;
+        final List<String> accounts;      // cycle path, or the hub account
+        final int observed;               // cycle length or distinct counterparties
+
+        Alert(Pattern pattern, String txnId, List<String> accounts, int observed) {
+            this.pattern = pattern;
+            this.txnId = txnId;
+            this.accounts = accounts;
+            this.observed = observed;
+        }
+
+        @Override
+        public String toString() {
+            return pattern + " " + String.join(" -> ", accounts) + " (" + txnId + ") observed=" + observed;
+        }
+    }
+
+    static final class Limits {
+        Duration window = Duration.ofHours(1);
+        int maxCycleLength = 4;
+        int maxFanOut = 8;
+        int maxFanIn = 8;
+        int edgeBudget = 512;
+        int maxEdges = 1 << 22;         // the edge ring stops doubling once it reaches this size
+    }
+
+    // ==========================================
+    // 1. EDGE STORAGE (adjacency lists in a ring of arrays)
+    // ==========================================
+
+    // Edge ids only grow; edge e lives in slot e & (capacity - 1) while e >= firstLive.
+    // A list link to an evicted id (< firstLive) ends the walk, like a link to -1.
+    private int[] edgeSrc = new int[1024];
+    private int[] edgeDst = new int[1024];
+    private long[] edgeTime = new long[1024];
+    private long[] nextOut = new long[1024];    // next older edge with the same source
+    private long[] nextIn = new long[1024];     // next older edge with the same destination
+    private long firstLive;
+    private long nextEdge;
+
+    private long[] outHead = new long[64];
+    private long[] inHead = new long[64];
+
+    // Generation-stamped scratch: no clearing between checks
+    private int[] seenStamp = new int[64];
+    private int stamp;
+    private int[] parentEdge = new int[64];     // slot of the edge that reached the account
+
+    private final AccountSymbolTable accounts;
+    private final Limits limits;
+    private final long windowMillis;
+    private final Consumer<Alert> alertSink;
+    private long alerts;
+    private long expansions;
+
+    public TransferGraph(AccountSymbolTable accounts, Limits limits, Consumer<Alert> alertSink) {
+        this.accounts = accounts;
+        this.limits = limits;
+        this.windowMillis = limits.window.toMillis();
+        this.alertSink = alertSink;
+        Arrays.fill(outHead, -1);
+        Arrays.fill(inHead, -1);
+    }
+
+    private void ensureAccount(int accountId) {
+        if (accountId < outHead.length) {
+            return;
+        }
+        int old = outHead.length;
+        int n = Math.max(accountId + 1, old << 1);
+        outHead = Arrays.copyOf(outHead, n);
+        inHead = Arrays.copyOf(inHead, n);
+        seenStamp = Arrays.copyOf(seenStamp, n);
+        parentEdge = Arrays.copyOf(parentEdge, n);
+        Arrays.fill(outHead, old, n, -1);
+        Arrays.fill(inHead, old, n, -1);
+    }
+
+    private int slot(long e) {
+        return (int) e & (edgeSrc.length - 1);
+    }
+
+    /** True if e is a stored edge newer than cutoff; false ends a list walk. */
+    private boolean live(long e, long cutoff) {
+        return e >= firstLive && edgeTime[slot(e)] > cutoff;
+    }
+
+    private void addEdge(int src, int dst, long time) {
+        // evict from the oldest end; transfers arrive roughly in time order
+        long cutoff = time - windowMillis;
+        while (firstLive < nextEdge && edgeTime[slot(firstLive)] <= cutoff) {
+            firstLive++;
+        }
+        if (nextEdge - firstLive == edgeSrc.length) {
+            if (edgeSrc.length < limits.maxEdges) {
+                grow();
+            } else {
+                firstLive++;        // hard cap: drop the oldest edge
+            }
+        }
+        long e = nextEdge++;
+        int s = slot(e);
+        edgeSrc[s] = src;
+        edgeDst[s] = dst;
+        edgeTime[s] = time;
+        nextOut[s] = outHead[src];
+        nextIn[s] = inHead[dst];
+        outHead[src] = e;
+        inHead[dst] = e;
+    }
+
+    /** Doubles the ring; each live edge moves to the slot its id maps to under the new mask. */
+    private void grow() {
+        int n = edgeSrc.length << 1;
+        int[] src = new int[n];
+        int[] dst = new int[n];
+        long[] time = new long[n];
+        long[] out = new long[n];
+        long[] in = new long[n];
+        for (long e = firstLive; e < nextEdge; e++) {
+            int from = slot(e);
+            int to = (int) e & (n - 1);
+            src[to] = edgeSrc[from];
+            dst[to] = edgeDst[from];
+            time[to] = edgeTime[from];
+            out[to] = nextOut[from];
+            in[to] = nextIn[from];
+        }
+        edgeSrc = src;
+        edgeDst = dst;
+        edgeTime = time;
+        nextOut = out;
+        nextIn = in;
+    }
+
+    /** Next scratch generation; on wrap-around the stamps are cleared so an old mark cannot match. */
+    private int nextStamp() {
+        if (++stamp == 0) {
+            Arrays.fill(seenStamp, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    // ==========================================
+    // 2. INGEST + ONLINE CHECKS
+    // ==========================================
+
+    @Override
+    public void onAppend(TransactionStore store, int row) {
+        int dst = store.counterpartyIdAt(row);
+        if (store.type(row) == LambdasDemo.TxnType.TRANSFER && dst >= 0) {
+            addTransfer(store.txnId(row), store.accountIdAt(row), dst, store.timestamp(row));
+        }
+    }
+
+    /** Adds the edge src -> dst and runs the pattern checks around it; returns true if any fired. */
+    public boolean addTransfer(long txnId, int src, int dst, long time) {
+        ensureAccount(Math.max(src, dst));
+        boolean fired = false;
+        if (src != dst) {
+            fired |= checkCycle(txnId, src, dst, time);
+        }
+        addEdge(src, dst, time);
+        fired |= checkFan(txnId, src, time, true);
+        fired |= checkFan(txnId, dst, time, false);
+        return fired;
+    }
+
+    /**
+     * Breadth-first search from dst over out-edges that are inside the window and
+     * non-decreasing in time (money can only move on after it arrived), looking for src.
+     */
+    private boolean checkCycle(long txnId, int src, int dst, long now) {
+        long cutoff = now - windowMillis;
+        int maxDepth = limits.maxCycleLength - 1;
+        int budget = limits.edgeBudget;
+        int mark = nextStamp();
+        seenStamp[dst] = mark;
+        parentEdge[dst] = -1;
+        int[] frontier = {dst};
+        long[] arrival = {cutoff};
+        for (int depth = 0; depth < maxDepth && frontier.length > 0; depth++) {
+            int[] next = new int[Math.min(budget, 16)];
+            long[] nextArrival = new long[next.length];
+            int n = 0;
+            for (int i = 0; i < frontier.length; i++) {
+                for (long e = outHead[frontier[i]]; live(e, cutoff); e = nextOut[slot(e)]) {
+                    if (budget-- == 0) {
+                        return false;
+                    }
+                    expansions++;
+                    int s = slot(e);
+                    int to = edgeDst[s];
+                    if (edgeTime[s] < arrival[i] || seenStamp[to] == mark) {
+                        continue;
+                    }
+                    seenStamp[to] = mark;
+                    parentEdge[to] = s;
+                    if (to == src) {
+                        return raise(Pattern.CYCLE, txnId, cyclePath(src, dst), depth + 2);
+                    }
+                    if (n == next.length) {
+                        next = Arrays.copyOf(next, n << 1);
+                        nextArrival = Arrays.copyOf(nextArrival, n << 1);
+                    }
+                    next[n] = to;
+                    nextArrival[n++] = edgeTime[s];
+                }
+            }
+            frontier = Arrays.copyOf(next, n);
+            arrival = Arrays.copyOf(nextArrival, n);
+        }
+        return false;
+    }
+
+    private List<String> cyclePath(int src, int dst) {
+        Deque<String> path = new ArrayDeque<>();
+        path.addFirst(accounts.name(src));
+        for (int node = src; node != dst; node = edgeSrc[parentEdge[node]]) {
+            path.addFirst(accounts.name(edgeSrc[parentEdge[node]]));
+        }
+        path.addFirst(accounts.name(src));
+        return new ArrayList<>(path);
+    }
+
+    /**
+     * Counts distinct counterparties of 'account' in the window (out-edges or in-edges).
+     * The newest edge is the one just added; the check fires only if its counterparty
+     * is new in the window and takes the count just past the limit, so repeat
+     * transfers to already-counted accounts never re-fire.
+     */
+    private boolean checkFan(long txnId, int account, long now, boolean out) {
+        long cutoff = now - windowMillis;
+        int budget = limits.edgeBudget;
+        int limit = out ? limits.maxFanOut : limits.maxFanIn;
+        int mark = nextStamp();
+        int distinct = 0;
+        long newest = out ? outHead[account] : inHead[account];
+        int added = out ? edgeDst[slot(newest)] : edgeSrc[slot(newest)];
+        boolean repeat = false;
+        for (long e = newest; live(e, cutoff) && budget-- > 0; e = out ? nextOut[slot(e)] : nextIn[slot(e)]) {
+            expansions++;
+            int other = out ? edgeDst[slot(e)] : edgeSrc[slot(e)];
+            if (seenStamp[other] != mark) {
+                seenStamp[other] = mark;
+                distinct++;
+            } else if (other == added) {
+                repeat = true;          // the new edge's counterparty was already counted
+                break;
+            }
+        }
+        return !repeat && distinct == limit + 1
+                && raise(out ? Pattern.FAN_OUT : Pattern.FAN_IN, txnId,
+                         Collections.singletonList(accounts.name(account)), distinct);
+    }
+
+    private boolean raise(Pattern pattern, long txnId, List<String> path, int observed) {
+        alerts++;
+        alertSink.accept(new Alert(pattern, TransactionStore.formatTxnId(txnId), path, observed));
+        return true;
+    }
+
+    public long alertCount() { return alerts; }
+    /** Edges added since creation. */
+    public long edgeCount() { return nextEdge; }
+    /** Edges still stored: those inside the window (plus any not yet evicted by a newer edge). */
+    public long liveEdgeCount() { return nextEdge - firstLive; }
+    /** Total edges examined by all checks, to confirm the per-edge work stays bounded. */
+    public long expansions() { return expansions; }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println(">>> INCREMENTAL TRANSFER GRAPH <<<\n");
+
+        AccountSymbolTable accounts = new AccountSymbolTable();
+        TransactionStore store = new TransactionStore(accounts, 1 << 20);
+        TransferGraph graph = new TransferGraph(accounts, new Limits(), alert -> System.out.println("ALERT: " + alert));
+        store.addListener(graph);
+
+        store.appendAll(LambdasDemo.samplePool());
+
+        // Background: random transfers between 200,000 accounts, one every 50 ms
+        for (int a = 0; a < 200_000; a++) {
+            accounts.intern("ACC_" + a);
+        }
+        Random rnd = new Random(18);
+        long time = System.currentTimeMillis();     // after the sample pool, which is stamped "now"
+        long txn = 1_000;
+        for (int i = 0; i < 500_000; i++) {
+            time += 50;
+            store.append(txn++, rnd.nextInt(200_000), rnd.nextInt(200_000), 100 + rnd.nextInt(100_000),
+                    LambdasDemo.TxnType.TRANSFER, time);
+
+            if (i == 200_000) {
+                // Layering ring: ACC_L1 -> ACC_L2 -> ACC_L3 -> ACC_L1 within a few minutes
+                int l1 = accounts.intern("ACC_L1"), l2 = accounts.intern("ACC_L2"), l3 = accounts.intern("ACC_L3");
+                store.append(txn++, l1, l2, 900_000, LambdasDemo.TxnType.TRANSFER, time);
+                store.append(txn++, l2, l3, 880_000, LambdasDemo.TxnType.TRANSFER, time + 60_000);
+                store.append(txn++, l3, l1, 860_000, LambdasDemo.TxnType.TRANSFER, time + 120_000);
+            }
+            if (i == 300_000) {
+                // Smurfing: one account splits into 10 mules that all pay one collector
+                int hub = accounts.intern("ACC_HUB");
+                int collector = accounts.intern("ACC_COLLECT");
+                for (int m = 0; m < 10; m++) {
+                    int mule = accounts.intern("ACC_MULE_" + m);
+                    store.append(txn++, hub, mule, 95_000, LambdasDemo.TxnType.TRANSFER, time + m * 1_000);
+                    store.append(txn++, mule, collector, 94_000, LambdasDemo.TxnType.TRANSFER, time + m * 1_000 + 500);
+                }
+            }
+        }
+
+        System.out.printf("%nIndexed %,d transfer edges (%,d still in the window), %d alerts, %.1f edges examined per transfer%n",
+                graph.edgeCount(), graph.liveEdgeCount(), graph.alertCount(),
+                (double) graph.expansions() / graph.edgeCount());
+    }
+}
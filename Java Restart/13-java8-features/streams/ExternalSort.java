@@ -0,0 +1,526 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * EXTERNAL-MEMORY sorted() / distinct()
+ * -------------------------------------
+ * distinct() and sorted() buffer the whole stream on the heap. ExternalSort does
+ * the same job inside a fixed memory budget:
+ *
+ * ✅ Run generation: records are buffered until the budget is used, sorted, and
+ *    spilled to a temporary file as one sorted run (records: int length + bytes)
+ * ✅ K-way merge: runs are memory-mapped in windows and merged with a priority
+ *    queue; more than MAX_FAN_IN runs are first merged in groups
+ * ✅ Same results as the in-memory operators: sorted() is stable (ties keep
+ *    encounter order), sortedDistinct() == distinct().sorted(), and distinct()
+ *    keeps the first occurrence in encounter order (two sort passes)
+ * ✅ Lazy: nothing is read until the terminal operation; input that fits in the
+ *    budget never touches the disk; spill files are deleted when the merge
+ *    finishes or the stream is closed
+ *
+ * Records are duplicates when the comparator returns 0, so use a comparator
+ * consistent with equals() to match Stream.distinct(). The budget counts
+ * Codec.heapSize() of the buffered records, not exact heap usage.
+ */
+public final class ExternalSort<T> {
+
+    /** Serializes one record; read() sees exactly the bytes write() produced. */
+    public interface Codec<T> {
+        void write(T value, DataOutput out) throws IOException;
+
+        T read(ByteBuffer in);
+
+        /** Estimated heap bytes of one buffered record, for the memory budget. */
+        default long heapSize(T value) { return 64; }
+    }
+
+    public static final Codec<String> STRINGS = new Codec<String>() {
+        @Override
+        public void write(String value, DataOutput out) throws IOException {
+            out.write(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String read(ByteBuffer in) {
+            byte[] bytes = new byte[in.remaining()];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public long heapSize(String value) { return 56 + value.length(); }
+    };
+
+    static final int MAX_FAN_IN = 64;
+    private static final int WINDOW_BYTES = 8 << 20;
+
+    private final Codec<T> codec;
+    private final long memoryBudget;
+    private final Path spillDirectory;
+    private long runsSpilled;
+    private long bytesSpilled;
+
+    public ExternalSort(Codec<T> codec, long memoryBudgetBytes) {
+        this(codec, memoryBudgetBytes, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    public ExternalSort(Codec<T> codec, long memoryBudgetBytes, Path spillDirectory) {
+        if (memoryBudgetBytes < 1) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + memoryBudgetBytes);
+        }
+        this.codec = codec;
+        this.memoryBudget = memoryBudgetBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    // ==========================================
+    // 1. OPERATORS
+    // ==========================================
+
+    /** Stable sort, like Stream.sorted(comparator). */
+    public Stream<T> sorted(Stream<T> source, Comparator<? super T> comparator) {
+        return sort(source, comparator, codec, false);
+    }
+
+    /** Same result as source.distinct().sorted(comparator), in one pass. */
+    public Stream<T> sortedDistinct(Stream<T> source, Comparator<? super T> comparator) {
+        return sort(source, comparator, codec, true);
+    }
+
+    /**
+     * Same result as source.distinct(): the first occurrence of each record, in
+     * encounter order. Records are tagged with their position, deduplicated by a
+     * sort on the record, then sorted back by position.
+     */
+    public Stream<T> distinct(Stream<T> source, Comparator<? super T> comparator) {
+        boolean parallel = source.isParallel();
+        long[] position = {0};
+        Stream<Indexed<T>> indexed = source.sequential().map(t -> new Indexed<>(position[0]++, t));
+        Codec<Indexed<T>> indexedCodec = new IndexedCodec<>(codec);
+        Stream<Indexed<T>> firsts = sort(indexed, (a, b) -> comparator.compare(a.value, b.value), indexedCodec, true);
+        Stream<T> result = sort(firsts, Comparator.comparingLong(i -> i.position), indexedCodec, false)
+                .map(i -> i.value);
+        return parallel ? result.parallel() : result;
+    }
+
+    public long runsSpilled() { return runsSpilled; }
+    public long bytesSpilled() { return bytesSpilled; }
+
+    private static final class Indexed<T> {
+        final long position;
+        final T value;
+
+        Indexed(long position, T value) {
+            this.position = position;
+            this.value = value;
+        }
+    }
+
+    private static final class IndexedCodec<T> implements Codec<Indexed<T>> {
+        private final Codec<T> codec;
+
+        IndexedCodec(Codec<T> codec) { this.codec = codec; }
+
+        @Override
+        public void write(Indexed<T> value, DataOutput out) throws IOException {
+            out.writeLong(value.position);
+            codec.write(value.value, out);
+        }
+
+        @Override
+        public Indexed<T> read(ByteBuffer in) {
+            long position = in.getLong();
+            return new Indexed<>(position, codec.read(in));
+        }
+
+        @Override
+        public long heapSize(Indexed<T> value) { return 24 + codec.heapSize(value.value); }
+    }
+
+    // ==========================================
+    // 2. RUN GENERATION
+    // ==========================================
+
+    /** Temporary files of one sort; closed by the merge or by Stream.close(). */
+    private static final class Spill implements Closeable {
+        final Set<Path> files = new LinkedHashSet<>();
+        final Set<FileChannel> open = new LinkedHashSet<>();
+
+        /** Closes and deletes the given runs (one merge's inputs). */
+        void release(Collection<FileChannel> channels, Collection<Path> runs) {
+            for (FileChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // deleting the file below is what matters
+                }
+                open.remove(channel);
+            }
+            for (Path file : runs) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    file.toFile().deleteOnExit();       // e.g. still mapped on Windows
+                }
+                files.remove(file);
+            }
+        }
+
+        @Override
+        public void close() {
+            release(new ArrayList<>(open), new ArrayList<>(files));
+        }
+    }
+
+    private <U> Stream<U> sort(Stream<U> source, Comparator<? super U> comparator, Codec<U> codec, boolean distinct) {
+        Spill spill = new Spill();
+        return StreamSupport.stream(() -> {
+            try {
+                return spliterate(source, comparator, codec, distinct, spill);
+            } catch (IOException e) {
+                spill.close();
+                throw new UncheckedIOException(e);
+            }
+        }, Spliterator.ORDERED, source.isParallel())         // both paths below report exactly ORDERED
+                .onClose(spill::close)
+                .onClose(source::close);
+    }
+
+    private <U> Spliterator<U> spliterate(Stream<U> source, Comparator<? super U> comparator, Codec<U> codec,
+                                          boolean distinct, Spill spill) throws IOException {
+        boolean parallel = source.isParallel();
+        List<Path> runs = new ArrayList<>();
+        @SuppressWarnings("unchecked")
+        U[] buffer = (U[]) new Object[1024];            // reused for every run, sorted in place
+        int size = 0;
+        long used = 0;
+        Iterator<U> input = source.sequential().iterator();
+        while (input.hasNext()) {
+            U value = input.next();
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size << 1);
+            }
+            buffer[size++] = value;
+            used += 8 + codec.heapSize(value);
+            if (used >= memoryBudget) {
+                runs.add(writeRun(buffer, sortBuffer(buffer, size, comparator, distinct, parallel), codec, spill));
+                Arrays.fill(buffer, 0, size, null);
+                size = 0;
+                used = 0;
+            }
+        }
+        size = sortBuffer(buffer, size, comparator, distinct, parallel);
+        if (runs.isEmpty()) {
+            // fits in memory: no disk at all
+            return Spliterators.spliteratorUnknownSize(Arrays.asList(buffer).subList(0, size).iterator(),
+                    Spliterator.ORDERED);
+        }
+        if (size > 0) {
+            runs.add(writeRun(buffer, size, codec, spill));
+        }
+        buffer = null;
+        while (runs.size() > MAX_FAN_IN) {
+            List<Path> merged = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                List<Path> group = runs.subList(i, Math.min(runs.size(), i + MAX_FAN_IN));
+                if (group.size() == 1) {
+                    merged.add(group.get(0));
+                    continue;
+                }
+                Merge<U> merge = new Merge<>(group, comparator, codec, distinct, spill);
+                Path out = newRunFile(spill);
+                try (DataOutputStream data = runOutput(out)) {
+                    ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+                    while (merge.hasNext()) {
+                        writeRecord(merge.next(), codec, data, scratch);
+                    }
+                }
+                merged.add(out);
+            }
+            runs = merged;
+        }
+        return Spliterators.spliteratorUnknownSize(new Merge<>(runs, comparator, codec, distinct, spill),
+                Spliterator.ORDERED);
+    }
+
+    /**
+     * Sorts buffer[0, size) in place and, for distinct, compacts it in place keeping
+     * the first of each run of equal records; returns the new size. No second copy
+     * of the run is made, so a run costs the budget, not a multiple of it.
+     */
+    private static <U> int sortBuffer(U[] buffer, int size, Comparator<? super U> comparator, boolean distinct,
+                                      boolean parallel) {
+        if (parallel) {
+            Arrays.parallelSort(buffer, 0, size, comparator);     // stable, like Arrays.sort
+        } else {
+            Arrays.sort(buffer, 0, size, comparator);
+        }
+        if (!distinct || size == 0) {
+            return size;
+        }
+        int kept = 1;
+        for (int i = 1; i < size; i++) {
+            if (comparator.compare(buffer[kept - 1], buffer[i]) != 0) {
+                buffer[kept++] = buffer[i];
+            }
+        }
+        Arrays.fill(buffer, kept, size, null);
+        return kept;
+    }
+
+    private Path newRunFile(Spill spill) throws IOException {
+        Path file = Files.createTempFile(spillDirectory, "extsort-", ".run");
+        spill.files.add(file);
+        runsSpilled++;
+        return file;
+    }
+
+    private static DataOutputStream runOutput(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+
+    private <U> Path writeRun(U[] sorted, int size, Codec<U> codec, Spill spill) throws IOException {
+        Path file = newRunFile(spill);
+        try (DataOutputStream data = runOutput(file)) {
+            ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+            for (int i = 0; i < size; i++) {
+                writeRecord(sorted[i], codec, data, scratch);
+            }
+        }
+        return file;
+    }
+
+    private <U> void writeRecord(U value, Codec<U> codec, DataOutputStream data, ByteArrayOutputStream scratch)
+            throws IOException {
+        scratch.reset();
+        codec.write(value, new DataOutputStream(scratch));
+        data.writeInt(scratch.size());
+        scratch.writeTo(data);
+        bytesSpilled += 4 + scratch.size();
+    }
+
+    // ==========================================
+    // 3. K-WAY MERGE OVER MAPPED RUNS
+    // ==========================================
+
+    /** Reads one run through a sliding read-only mapping. */
+    private static final class RunReader<U> {
+        final int index;
+        private final FileChannel channel;
+        private final Codec<U> codec;
+        private final long size;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+        U head;
+
+        RunReader(int index, Path file, Codec<U> codec, Spill spill) throws IOException {
+            this.index = index;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            spill.open.add(channel);
+            this.codec = codec;
+            this.size = channel.size();
+        }
+
+        /** Maps [at, at + bytes) if the current window does not cover it. */
+        private int map(long at, int bytes) throws IOException {
+            if (window == null || at < windowStart || at + bytes > windowStart + window.capacity()) {
+                windowStart = at;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, at, Math.min(size - at, Math.max(bytes, WINDOW_BYTES)));
+            }
+            return (int) (at - windowStart);
+        }
+
+        boolean advance() throws IOException {
+            if (position >= size) {
+                head = null;
+                return false;
+            }
+            int offset = map(position, 4);
+            int length = window.getInt(offset);
+            offset = map(position, 4 + length);
+            window.limit(offset + 4 + length).position(offset + 4);
+            head = codec.read(window);
+            window.limit(window.capacity());
+            position += 4 + length;
+            return true;
+        }
+    }
+
+    /** Merges sorted runs; its input files are deleted as soon as it is exhausted. */
+    private static final class Merge<U> implements Iterator<U> {
+        private final PriorityQueue<RunReader<U>> heads;
+        private final List<Path> inputs;
+        private final List<FileChannel> channels = new ArrayList<>();
+        private final Comparator<? super U> comparator;
+        private final boolean distinct;
+        private final Spill spill;
+        private U last;
+        private boolean emitted;
+        private U next;
+        private boolean ready;
+
+        Merge(List<Path> runs, Comparator<? super U> comparator, Codec<U> codec, boolean distinct, Spill spill)
+                throws IOException {
+            this.comparator = comparator;
+            this.distinct = distinct;
+            this.spill = spill;
+            this.inputs = new ArrayList<>(runs);
+            // ties go to the earlier run, which holds earlier records: the merge is stable
+            this.heads = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+                int c = comparator.compare(a.head, b.head);
+                return c != 0 ? c : Integer.compare(a.index, b.index);
+            });
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader<U> reader = new RunReader<>(i, runs.get(i), codec, spill);
+                channels.add(reader.channel);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!ready && !heads.isEmpty()) {
+                RunReader<U> reader = heads.poll();
+                U value = reader.head;
+                try {
+                    if (reader.advance()) {
+                        heads.add(reader);
+                    }
+                } catch (IOException e) {
+                    spill.close();
+                    throw new UncheckedIOException(e);
+                }
+                if (!distinct || !emitted || comparator.compare(last, value) != 0) {
+                    next = value;
+                    ready = true;
+                }
+                last = value;
+                emitted = true;
+            }
+            if (!ready) {
+                spill.release(channels, inputs);
+                channels.clear();
+                inputs.clear();
+            }
+            return ready;
+        }
+
+        @Override
+        public U next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            return next;
+        }
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    static final class Txn {
+        final long id;
+        final String account;
+        final long cents;
+
+        Txn(long id, String account, long cents) {
+            this.id = id;
+            this.account = account;
+            this.cents = cents;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Txn && ((Txn) o).id == id && ((Txn) o).account.equals(account) && ((Txn) o).cents == cents;
+        }
+
+        @Override
+        public int hashCode() { return Long.hashCode(id) * 31 + account.hashCode() + Long.hashCode(cents); }
+    }
+
+    static final Codec<Txn> TXNS = new Codec<Txn>() {
+        @Override
+        public void write(Txn t, DataOutput out) throws IOException {
+            out.writeLong(t.id);
+            out.writeLong(t.cents);
+            out.write(t.account.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Txn read(ByteBuffer in) {
+            long id = in.getLong();
+            long cents = in.getLong();
+            return new Txn(id, STRINGS.read(in), cents);
+        }
+
+        @Override
+        public long heapSize(Txn t) { return 32 + STRINGS.heapSize(t.account); }
+    };
+
+    public static void main(String[] args) {
+        System.out.println("=== External-Memory sorted() / distinct() ===\n");
+
+        // StreamsDemo section 4, through the external operators with a tiny budget
+        List<String> names = Arrays.asList("Charlie", "Alice", "Bob", "Alice", "Eve", "David", "Bob", "Frank");
+        ExternalSort<String> strings = new ExternalSort<>(STRINGS, 200);
+        System.out.println("In memory: " + names.stream().distinct().sorted().skip(1).limit(4).collect(Collectors.toList()));
+        try (Stream<String> external = strings.sortedDistinct(names.stream(), Comparator.naturalOrder())) {
+            // limit() stops the merge early: close() deletes the remaining spill files
+            System.out.println("External:  " + external.skip(1).limit(4).collect(Collectors.toList())
+                    + " (" + strings.runsSpilled() + " runs spilled)");
+        }
+        System.out.println("distinct(): " + strings.distinct(names.stream(), Comparator.naturalOrder())
+                .collect(Collectors.toList()));
+
+        // 1M transactions with ~10% resends, sorted by account then amount under a 4 MB budget
+        Random rnd = new Random(24);
+        List<Txn> month = new ArrayList<>(1_000_000);
+        for (int i = 0; i < 1_000_000; i++) {
+            month.add(rnd.nextInt(10) == 0 && i > 0
+                    ? month.get(rnd.nextInt(i))
+                    : new Txn(i, "ACC_" + rnd.nextInt(50_000), rnd.nextInt(1_000_000)));
+        }
+        Comparator<Txn> byAccount = Comparator.<Txn, String>comparing(t -> t.account).thenComparingLong(t -> t.cents);
+
+        long t0 = System.nanoTime();
+        List<Txn> expectedSorted = month.stream().sorted(byAccount).collect(Collectors.toList());
+        List<Txn> expectedDistinct = month.stream().distinct().sorted(byAccount.thenComparingLong(t -> t.id))
+                .collect(Collectors.toList());
+        long t1 = System.nanoTime();
+
+        ExternalSort<Txn> external = new ExternalSort<>(TXNS, 4L << 20);
+        boolean sortedMatches;
+        boolean distinctMatches;
+        try (Stream<Txn> sorted = external.sorted(month.stream(), byAccount)) {
+            sortedMatches = sorted.collect(Collectors.toList()).equals(expectedSorted);
+        }
+        try (Stream<Txn> distinct = external.sortedDistinct(month.stream(), byAccount.thenComparingLong(t -> t.id))) {
+            distinctMatches = distinct.collect(Collectors.toList()).equals(expectedDistinct);
+        }
+        long t2 = System.nanoTime();
+
+        System.out.printf("%n%,d records: in memory %.0f ms, external %.0f ms (%d runs, %,d MB spilled)%n",
+                month.size(), (t1 - t0) / 1e6, (t2 - t1) / 1e6, external.runsSpilled(), external.bytesSpilled() >> 20);
+        System.out.println("sorted() matches (stable): " + sortedMatches);
+        System.out.println("distinct().sorted() matches: " + distinctMatches + " (" + expectedDistinct.size() + " distinct)");
+
+        List<Txn> firstSeen = new ExternalSort<>(TXNS, 4L << 20)
+                .distinct(month.stream(), byAccount.thenComparingLong(t -> t.id)).collect(Collectors.toList());
+        System.out.println("distinct() matches encounter order: "
+                + firstSeen.equals(month.stream().distinct().collect(Collectors.toList())));
+    }
+}
@@ -0,0 +1,483 @@
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * PRIMITIVE GROUPING COLLECTORS (No Boxing)
+ * -----------------------------------------
+ * Collectors.groupingBy(key, summingLong(...)) keeps a Map<K, Long>-like
+ * structure: every update reads and writes boxed values, and reduce(0, (a, b) -> a + b)
+ * on a Stream<Integer> boxes every intermediate sum. These collectors group into
+ * open-addressing tables whose values live in primitive arrays:
+ *
+ * ✅ count, sum, min, max and average per key in one pass
+ * ✅ long keys (ids) -> LongGroups: keys are a long[], nothing is boxed at all
+ * ✅ object keys (names) -> Groups<K> (long values) / DoubleGroups<K> (double values,
+ *    compensated summation so large sums of small amounts do not drift)
+ * ✅ Parallel streams: each worker fills its own table and the combiner folds the
+ *    smaller table into the larger one
+ *
+ * Slots are linear-probed; a slot is empty while its count is 0 (long keys) or its
+ * key is null (object keys), so no sentinel value is reserved. As in groupingBy,
+ * a null key is rejected with NullPointerException.
+ */
+public final class PrimitiveCollectors {
+
+    private PrimitiveCollectors() { }
+
+    private static final int MIN_CAPACITY = 16;
+
+    /** SplitMix64 finalizer, so sequential ids spread over the table. */
+    static int spread(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (x ^ (x >>> 31));
+    }
+
+    // ==========================================
+    // 1. LONG KEY -> LONG STATS
+    // ==========================================
+
+    @FunctionalInterface
+    interface LongKeyStatsConsumer {
+        void accept(long key, long count, long sum, long min, long max);
+    }
+
+    static final class LongGroups {
+        private long[] keys = new long[MIN_CAPACITY];
+        private long[] counts = new long[MIN_CAPACITY];
+        private long[] sums = new long[MIN_CAPACITY];
+        private long[] mins = new long[MIN_CAPACITY];
+        private long[] maxs = new long[MIN_CAPACITY];
+        private int size;
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int i = spread(key) & mask;
+            while (counts[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        void add(long key, long value) {
+            int i = slot(key);
+            if (counts[i] == 0) {
+                keys[i] = key;
+                mins[i] = value;
+                maxs[i] = value;
+                if (++size * 2 > keys.length) {
+                    counts[i] = 1;
+                    sums[i] = value;
+                    rehash(keys.length << 1);
+                    return;
+                }
+            } else {
+                mins[i] = Math.min(mins[i], value);
+                maxs[i] = Math.max(maxs[i], value);
+            }
+            counts[i]++;
+            sums[i] = Math.addExact(sums[i], value);
+        }
+
+        private void combine(long key, long count, long sum, long min, long max) {
+            int i = slot(key);
+            if (counts[i] == 0) {
+                keys[i] = key;
+                counts[i] = count;
+                sums[i] = sum;
+                mins[i] = min;
+                maxs[i] = max;
+                if (++size * 2 > keys.length) {
+                    rehash(keys.length << 1);
+                }
+                return;
+            }
+            counts[i] += count;
+            sums[i] = Math.addExact(sums[i], sum);
+            mins[i] = Math.min(mins[i], min);
+            maxs[i] = Math.max(maxs[i], max);
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys, oldCounts = counts, oldSums = sums, oldMins = mins, oldMaxs = maxs;
+            keys = new long[capacity];
+            counts = new long[capacity];
+            sums = new long[capacity];
+            mins = new long[capacity];
+            maxs = new long[capacity];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldCounts[j] != 0) {
+                    int i = slot(oldKeys[j]);
+                    keys[i] = oldKeys[j];
+                    counts[i] = oldCounts[j];
+                    sums[i] = oldSums[j];
+                    mins[i] = oldMins[j];
+                    maxs[i] = oldMaxs[j];
+                }
+            }
+        }
+
+        LongGroups merge(LongGroups other) {
+            LongGroups big = size >= other.size ? this : other;
+            LongGroups small = big == this ? other : this;
+            small.forEach(big::combine);
+            return big;
+        }
+
+        public int size() { return size; }
+        public long count(long key) { return counts[slot(key)]; }
+        public long sum(long key) { return sums[slot(key)]; }
+
+        public OptionalLong min(long key) {
+            int i = slot(key);
+            return counts[i] == 0 ? OptionalLong.empty() : OptionalLong.of(mins[i]);
+        }
+
+        public OptionalLong max(long key) {
+            int i = slot(key);
+            return counts[i] == 0 ? OptionalLong.empty() : OptionalLong.of(maxs[i]);
+        }
+
+        public OptionalDouble average(long key) {
+            int i = slot(key);
+            return counts[i] == 0 ? OptionalDouble.empty() : OptionalDouble.of((double) sums[i] / counts[i]);
+        }
+
+        public void forEach(LongKeyStatsConsumer action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (counts[i] != 0) {
+                    action.accept(keys[i], counts[i], sums[i], mins[i], maxs[i]);
+                }
+            }
+        }
+    }
+
+    // ==========================================
+    // 2. OBJECT KEY -> LONG STATS
+    // ==========================================
+
+    @FunctionalInterface
+    interface StatsConsumer<K> {
+        void accept(K key, long count, long sum, long min, long max);
+    }
+
+    static final class Groups<K> {
+        private Object[] keys = new Object[MIN_CAPACITY];
+        private long[] counts = new long[MIN_CAPACITY];
+        private long[] sums = new long[MIN_CAPACITY];
+        private long[] mins = new long[MIN_CAPACITY];
+        private long[] maxs = new long[MIN_CAPACITY];
+        private int size;
+
+        private int slot(Object key) {
+            int mask = keys.length - 1;
+            int i = spread(key.hashCode()) & mask;
+            while (keys[i] != null && !keys[i].equals(key)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        void add(K key, long value) {
+            combine(Objects.requireNonNull(key, "element cannot be mapped to a null key"), 1, value, value, value);
+        }
+
+        private void combine(K key, long count, long sum, long min, long max) {
+            int i = slot(key);
+            if (keys[i] == null) {
+                keys[i] = key;
+                counts[i] = count;
+                sums[i] = sum;
+                mins[i] = min;
+                maxs[i] = max;
+                if (++size * 2 > keys.length) {
+                    rehash(keys.length << 1);
+                }
+                return;
+            }
+            counts[i] += count;
+            sums[i] = Math.addExact(sums[i], sum);
+            mins[i] = Math.min(mins[i], min);
+            maxs[i] = Math.max(maxs[i], max);
+        }
+
+        private void rehash(int capacity) {
+            Object[] oldKeys = keys;
+            long[] oldCounts = counts, oldSums = sums, oldMins = mins, oldMaxs = maxs;
+            keys = new Object[capacity];
+            counts = new long[capacity];
+            sums = new long[capacity];
+            mins = new long[capacity];
+            maxs = new long[capacity];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != null) {
+                    int i = slot(oldKeys[j]);
+                    keys[i] = oldKeys[j];
+                    counts[i] = oldCounts[j];
+                    sums[i] = oldSums[j];
+                    mins[i] = oldMins[j];
+                    maxs[i] = oldMaxs[j];
+                }
+            }
+        }
+
+        Groups<K> merge(Groups<K> other) {
+            Groups<K> big = size >= other.size ? this : other;
+            Groups<K> small = big == this ? other : this;
+            small.forEach(big::combine);
+            return big;
+        }
+
+        public int size() { return size; }
+        public long count(K key) { return counts[slot(key)]; }
+        public long sum(K key) { return sums[slot(key)]; }
+
+        public OptionalLong min(K key) {
+            int i = slot(key);
+            return keys[i] == null ? OptionalLong.empty() : OptionalLong.of(mins[i]);
+        }
+
+        public OptionalLong max(K key) {
+            int i = slot(key);
+            return keys[i] == null ? OptionalLong.empty() : OptionalLong.of(maxs[i]);
+        }
+
+        public OptionalDouble average(K key) {
+            int i = slot(key);
+            return keys[i] == null ? OptionalDouble.empty() : OptionalDouble.of((double) sums[i] / counts[i]);
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEach(StatsConsumer<K> action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    action.accept((K) keys[i], counts[i], sums[i], mins[i], maxs[i]);
+                }
+            }
+        }
+    }
+
+    // ==========================================
+    // 3. OBJECT KEY -> DOUBLE STATS
+    // ==========================================
+
+    @FunctionalInterface
+    interface DoubleStatsConsumer<K> {
+        void accept(K key, long count, double sum, double min, double max);
+    }
+
+    static final class DoubleGroups<K> {
+        private Object[] keys = new Object[MIN_CAPACITY];
+        private long[] counts = new long[MIN_CAPACITY];
+        private double[] sums = new double[MIN_CAPACITY];
+        private double[] compensations = new double[MIN_CAPACITY];   // Kahan: low-order bits lost from sums
+        private double[] mins = new double[MIN_CAPACITY];
+        private double[] maxs = new double[MIN_CAPACITY];
+        private int size;
+
+        private int slot(Object key) {
+            int mask = keys.length - 1;
+            int i = spread(key.hashCode()) & mask;
+            while (keys[i] != null && !keys[i].equals(key)) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        void add(K key, double value) {
+            combine(Objects.requireNonNull(key, "element cannot be mapped to a null key"), 1, value, 0, value, value);
+        }
+
+        private void combine(K key, long count, double sum, double compensation, double min, double max) {
+            int i = slot(key);
+            if (keys[i] == null) {
+                keys[i] = key;
+                counts[i] = count;
+                sums[i] = sum;
+                compensations[i] = compensation;
+                mins[i] = min;
+                maxs[i] = max;
+                if (++size * 2 > keys.length) {
+                    rehash(keys.length << 1);
+                }
+                return;
+            }
+            counts[i] += count;
+            kahanAdd(i, sum);
+            kahanAdd(i, -compensation);
+            mins[i] = Math.min(mins[i], min);
+            maxs[i] = Math.max(maxs[i], max);
+        }
+
+        private void kahanAdd(int i, double value) {
+            double y = value - compensations[i];
+            double t = sums[i] + y;
+            compensations[i] = (t - sums[i]) - y;
+            sums[i] = t;
+        }
+
+        /** Compensated sum, as DoubleSummaryStatistics.getSum(): the running sum minus the lost low-order bits. */
+        private double total(int i) {
+            double total = sums[i] - compensations[i];
+            return Double.isNaN(total) && Double.isInfinite(sums[i]) ? sums[i] : total;
+        }
+
+        private void rehash(int capacity) {
+            Object[] oldKeys = keys;
+            long[] oldCounts = counts;
+            double[] oldSums = sums, oldComp = compensations, oldMins = mins, oldMaxs = maxs;
+            keys = new Object[capacity];
+            counts = new long[capacity];
+            sums = new double[capacity];
+            compensations = new double[capacity];
+            mins = new double[capacity];
+            maxs = new double[capacity];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != null) {
+                    int i = slot(oldKeys[j]);
+                    keys[i] = oldKeys[j];
+                    counts[i] = oldCounts[j];
+                    sums[i] = oldSums[j];
+                    compensations[i] = oldComp[j];
+                    mins[i] = oldMins[j];
+                    maxs[i] = oldMaxs[j];
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        DoubleGroups<K> merge(DoubleGroups<K> other) {
+            DoubleGroups<K> big = size >= other.size ? this : other;
+            DoubleGroups<K> small = big == this ? other : this;
+            for (int j = 0; j < small.keys.length; j++) {
+                if (small.keys[j] != null) {
+                    big.combine((K) small.keys[j], small.counts[j], small.sums[j], small.compensations[j],
+                            small.mins[j], small.maxs[j]);
+                }
+            }
+            return big;
+        }
+
+        public int size() { return size; }
+        public long count(K key) { return counts[slot(key)]; }
+        public double sum(K key) { return total(slot(key)); }
+
+        public OptionalDouble min(K key) {
+            int i = slot(key);
+            return keys[i] == null ? OptionalDouble.empty() : OptionalDouble.of(mins[i]);
+        }
+
+        public OptionalDouble max(K key) {
+            int i = slot(key);
+            return keys[i] == null ? OptionalDouble.empty() : OptionalDouble.of(maxs[i]);
+        }
+
+        public OptionalDouble average(K key) {
+            int i = slot(key);
+            return keys[i] == null ? OptionalDouble.empty() : OptionalDouble.of(total(i) / counts[i]);
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEach(DoubleStatsConsumer<K> action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != null) {
+                    action.accept((K) keys[i], counts[i], total(i), mins[i], maxs[i]);
+                }
+            }
+        }
+    }
+
+    // ==========================================
+    // 4. COLLECTORS
+    // ==========================================
+
+    /** groupingBy(long key) with count/sum/min/max/avg of a long value; nothing is boxed. */
+    public static <T> Collector<T, ?, LongGroups> groupingByLong(ToLongFunction<? super T> key,
+                                                                  ToLongFunction<? super T> value) {
+        return Collector.of(LongGroups::new,
+                (g, t) -> g.add(key.applyAsLong(t), value.applyAsLong(t)),
+                LongGroups::merge,
+                Collector.Characteristics.IDENTITY_FINISH, Collector.Characteristics.UNORDERED);
+    }
+
+    /** groupingBy(key) with count/sum/min/max/avg of a long value kept in primitive arrays. */
+    public static <T, K> Collector<T, ?, Groups<K>> groupingBy(Function<? super T, ? extends K> key,
+                                                               ToLongFunction<? super T> value) {
+        return Collector.of(Groups<K>::new,
+                (g, t) -> g.add(key.apply(t), value.applyAsLong(t)),
+                Groups::merge,
+                Collector.Characteristics.IDENTITY_FINISH, Collector.Characteristics.UNORDERED);
+    }
+
+    /** groupingBy(key) counting elements: the unboxed counterpart of groupingBy(key, counting()). */
+    public static <T, K> Collector<T, ?, Groups<K>> countingBy(Function<? super T, ? extends K> key) {
+        return groupingBy(key, t -> 0L);
+    }
+
+    /** groupingBy(key) with count/sum/min/max/avg of a double value (compensated sum). */
+    public static <T, K> Collector<T, ?, DoubleGroups<K>> groupingByDouble(Function<? super T, ? extends K> key,
+                                                                           ToDoubleFunction<? super T> value) {
+        return Collector.of(DoubleGroups<K>::new,
+                (g, t) -> g.add(key.apply(t), value.applyAsDouble(t)),
+                DoubleGroups::merge,
+                Collector.Characteristics.IDENTITY_FINISH, Collector.Characteristics.UNORDERED);
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    static final class Txn {
+        final long accountId;
+        final String branch;
+        final long amountCents;
+
+        Txn(long accountId, String branch, long amountCents) {
+            this.accountId = accountId;
+            this.branch = branch;
+            this.amountCents = amountCents;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.println("=== Primitive Grouping Collectors ===\n");
+
+        String[] branches = {"NORTH", "SOUTH", "EAST", "WEST", "ONLINE"};
+        Random rnd = new Random(21);
+        List<Txn> txns = new ArrayList<>();
+        for (int i = 0; i < 3_000_000; i++) {
+            txns.add(new Txn(rnd.nextInt(100_000), branches[rnd.nextInt(branches.length)], 1 + rnd.nextInt(1_000_000)));
+        }
+
+        for (int run = 1; run <= 3; run++) {
+            long t0 = System.nanoTime();
+            Map<Long, LongSummaryStatistics> boxed = txns.parallelStream()
+                    .collect(Collectors.groupingBy(t -> t.accountId, Collectors.summarizingLong(t -> t.amountCents)));
+            long t1 = System.nanoTime();
+            LongGroups primitive = txns.parallelStream().collect(groupingByLong(t -> t.accountId, t -> t.amountCents));
+            long t2 = System.nanoTime();
+
+            boolean same = boxed.size() == primitive.size();
+            for (Map.Entry<Long, LongSummaryStatistics> e : boxed.entrySet()) {
+                same &= e.getValue().getSum() == primitive.sum(e.getKey())
+                        && e.getValue().getMax() == primitive.max(e.getKey()).getAsLong();
+            }
+            System.out.printf("Run %d: groupingBy+summarizingLong %.0f ms | groupingByLong %.0f ms | same result: %b%n",
+                    run, (t1 - t0) / 1e6, (t2 - t1) / 1e6, same);
+        }
+
+        System.out.println("\nPer branch (object keys, long values):");
+        Groups<String> byBranch = txns.parallelStream().collect(groupingBy(t -> t.branch, t -> t.amountCents));
+        byBranch.forEach((branch, count, sum, min, max) ->
+                System.out.printf("  %-6s count=%,d sum=%,d min=%d max=%d avg=%.2f%n",
+                        branch, count, sum, min, max, byBranch.average(branch).getAsDouble()));
+
+        DoubleGroups<String> inDollars = txns.stream().collect(groupingByDouble(t -> t.branch, t -> t.amountCents / 100.0));
+        System.out.printf("ONLINE in dollars (double, compensated): %.2f%n", inDollars.sum("ONLINE"));
+        System.out.println("EAST transactions: " + txns.stream().collect(countingBy(t -> t.branch)).count("EAST"));
+    }
+}
@@ -0,0 +1,347 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * PER-STAGE STREAM INSTRUMENTATION
+ * --------------------------------
+ * A pipeline like distinct().sorted().skip(1).limit(4) is one fused loop: a
+ * profiler shows time "in the stream", not which stage is slow. StreamProfiler
+ * wraps each stage and records, per stage:
+ *
+ * ✅ elements in and out (how selective each filter / distinct / limit is)
+ * ✅ exclusive time: a probe sits on every stage boundary and the time between
+ *    two probe events on a thread is charged to the stage the element was in
+ *    (so sorted() is charged for the sort, not its downstream; a stage that drops
+ *    an element is also charged for fetching the next one from upstream)
+ * ✅ allocated bytes, charged the same way (HotSpot per-thread allocation counter)
+ * ✅ report() prints a table, metrics() exports "pipeline.stage.metric" counters
+ *
+ * Disabled, profile(...).stage(...) applies each operation directly: the stream is
+ * exactly the uninstrumented one, so the cost is one branch per stage at build time.
+ * Work before the first and after the last element (e.g. the source opening, the
+ * terminal operation's finish) is not attributed: the source is wrapped so that a
+ * thread starting a new split (or a new run) forgets its previous stage, and idle
+ * time between splits or runs is never charged to the stage it last touched.
+ * Parallel streams are supported; each worker thread keeps its own counters and
+ * report() adds them up. The wrapped source never reports SIZED or SUBSIZED: with
+ * a known size and only size-preserving stages (map, sorted, peek), count()
+ * would return the size without traversing, and every stage would report zero.
+ * Profiling count() therefore measures the traversal it would otherwise skip.
+ */
+public final class StreamProfiler {
+
+    // ==========================================
+    // 1. PER-THREAD COUNTERS
+    // ==========================================
+
+    private static final com.sun.management.ThreadMXBean ALLOCATION = allocationBean();
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot;
+            }
+        }
+        return null;            // not HotSpot: allocation is reported as -1
+    }
+
+    /** Slot 0 is "(source + terminal)"; stage i (1-based) is the i-th wrapped operation. */
+    private static final class ThreadCounters {
+        long[] entered = new long[8];
+        long[] nanos = new long[8];
+        long[] bytes = new long[8];
+        int current = -1;
+        long since;
+        long sinceBytes;
+
+        void enter(int stage, boolean trackAllocation) {
+            long now = System.nanoTime();
+            long allocated = trackAllocation ? ALLOCATION.getCurrentThreadAllocatedBytes() : 0;
+            if (stage >= entered.length) {
+                int n = Math.max(stage + 1, entered.length << 1);
+                entered = Arrays.copyOf(entered, n);
+                nanos = Arrays.copyOf(nanos, n);
+                bytes = Arrays.copyOf(bytes, n);
+            }
+            if (current >= 0) {
+                nanos[current] += now - since;
+                bytes[current] += allocated - sinceBytes;
+            }
+            entered[stage]++;
+            current = stage;
+            since = now;
+            sinceBytes = allocated;
+        }
+
+        /** Start of a split: the time since the last probe event belongs to no stage. */
+        void reset() {
+            current = -1;
+        }
+    }
+
+    /**
+     * Source wrapper: resets the thread's counters when it starts traversing a split,
+     * and hides the size so no terminal operation can short-circuit past the probes.
+     */
+    private final class SplitBoundary<T> implements Spliterator<T> {
+        private final Spliterator<T> source;
+        private boolean started;
+
+        SplitBoundary(Spliterator<T> source) {
+            this.source = source;
+        }
+
+        private void start() {
+            if (!started) {
+                started = true;
+                local.get().reset();
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            start();
+            return source.tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            start();
+            source.forEachRemaining(action);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Spliterator<T> prefix = source.trySplit();
+            return prefix == null ? null : new SplitBoundary<>(prefix);
+        }
+
+        @Override
+        public long estimateSize() { return source.estimateSize(); }
+
+        @Override
+        public int characteristics() {
+            return source.characteristics() & ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() { return source.getComparator(); }
+    }
+
+    private final String pipeline;
+    private final boolean enabled;
+    private final boolean trackAllocation;
+    private final List<String> stages = new ArrayList<>(Collections.singletonList("(source + terminal)"));
+    private final List<ThreadCounters> threads = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<ThreadCounters> local = ThreadLocal.withInitial(() -> {
+        ThreadCounters counters = new ThreadCounters();
+        threads.add(counters);
+        return counters;
+    });
+
+    public StreamProfiler(String pipeline, boolean enabled) {
+        this(pipeline, enabled, true);
+    }
+
+    public StreamProfiler(String pipeline, boolean enabled, boolean trackAllocation) {
+        this.pipeline = pipeline;
+        this.enabled = enabled;
+        this.trackAllocation = trackAllocation && ALLOCATION != null;
+    }
+
+    public static StreamProfiler disabled(String pipeline) {
+        return new StreamProfiler(pipeline, false, false);
+    }
+
+    private void enter(int stage) {
+        local.get().enter(stage, trackAllocation);
+    }
+
+    // ==========================================
+    // 2. PIPELINE WRAPPER
+    // ==========================================
+
+    public <T> Pipeline<T> profile(Stream<T> source) {
+        if (!enabled) {
+            return new Pipeline<>(source, 1);
+        }
+        Stream<T> bounded = StreamSupport.stream(new SplitBoundary<>(source.spliterator()), source.isParallel());
+        return new Pipeline<>(bounded.onClose(source::close), 1);
+    }
+
+    /** Builder over a Stream; each stage() is one measured operation. One pipeline shape per profiler. */
+    public final class Pipeline<T> {
+        private final Stream<T> stream;
+        private final int next;
+
+        private Pipeline(Stream<T> stream, int next) {
+            this.stream = stream;
+            this.next = next;
+        }
+
+        public <R> Pipeline<R> stage(String name, Function<? super Stream<T>, ? extends Stream<R>> operation) {
+            if (!enabled) {
+                return new Pipeline<>(operation.apply(stream), next + 1);
+            }
+            synchronized (stages) {
+                if (next == stages.size()) {
+                    stages.add(name);
+                } else if (!stages.get(next).equals(name)) {
+                    throw new IllegalStateException("Stage " + next + " was '" + stages.get(next) + "', not '" + name + "'");
+                }
+            }
+            int stage = next;
+            return new Pipeline<>(operation.apply(stream.peek(t -> enter(stage))), next + 1);
+        }
+
+        /** The instrumented stream, ready for its terminal operation. */
+        public Stream<T> stream() {
+            return enabled ? stream.peek(t -> enter(0)) : stream;
+        }
+    }
+
+    // ==========================================
+    // 3. REPORTING / EXPORT
+    // ==========================================
+
+    /** One row per stage; for slot 0 'in' is elements reaching the terminal operation. */
+    public static final class StageMetrics {
+        public final String name;
+        public final long in;
+        public final long out;
+        public final long nanos;
+        public final long allocatedBytes;
+
+        StageMetrics(String name, long in, long out, long nanos, long allocatedBytes) {
+            this.name = name;
+            this.in = in;
+            this.out = out;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    /** Sums every worker thread's counters; call after the terminal operation has finished. */
+    public List<StageMetrics> snapshot() {
+        int n = stages.size();
+        long[] entered = new long[n + 1];
+        long[] nanos = new long[n];
+        long[] bytes = new long[n];
+        for (ThreadCounters c : threads) {
+            for (int s = 0; s < n && s < c.entered.length; s++) {
+                entered[s] += c.entered[s];
+                nanos[s] += c.nanos[s];
+                bytes[s] += c.bytes[s];
+            }
+        }
+        List<StageMetrics> rows = new ArrayList<>(n);
+        for (int s = 1; s < n; s++) {
+            long out = s + 1 < n ? entered[s + 1] : entered[0];
+            rows.add(new StageMetrics(stages.get(s), entered[s], out, nanos[s], trackAllocation ? bytes[s] : -1));
+        }
+        rows.add(new StageMetrics(stages.get(0), entered[0], n > 1 ? entered[1] : 0, nanos[0],
+                trackAllocation ? bytes[0] : -1));
+        return rows;
+    }
+
+    /** Flat counters for a metrics registry: "<pipeline>.<stage>.in|out|nanos|allocatedBytes". */
+    public Map<String, Long> metrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        for (StageMetrics m : snapshot()) {
+            String prefix = pipeline + "." + m.name + ".";
+            metrics.put(prefix + "in", m.in);
+            metrics.put(prefix + "out", m.out);
+            metrics.put(prefix + "nanos", m.nanos);
+            metrics.put(prefix + "allocatedBytes", m.allocatedBytes);
+        }
+        return metrics;
+    }
+
+    public void report(PrintStream out) {
+        if (!enabled) {
+            out.println("[" + pipeline + "] profiling disabled");
+            return;
+        }
+        List<StageMetrics> rows = snapshot();
+        long totalNanos = rows.stream().mapToLong(m -> m.nanos).sum();
+        out.println("[" + pipeline + "]");
+        out.printf("  %-22s %12s %12s %10s %6s %12s%n", "stage", "in", "out", "ms", "time%", "alloc KB");
+        for (StageMetrics m : rows) {
+            out.printf("  %-22s %,12d %,12d %10.2f %5.1f%% %,12d%n", m.name, m.in, m.out, m.nanos / 1e6,
+                    totalNanos == 0 ? 0.0 : 100.0 * m.nanos / totalNanos, m.allocatedBytes < 0 ? -1 : m.allocatedBytes >> 10);
+        }
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    public static void main(String[] args) {
+        System.out.println("=== Per-Stage Stream Instrumentation ===\n");
+
+        Random rnd = new Random(22);
+        List<Integer> mix = IntStream.range(0, 2_000_000).map(i -> rnd.nextInt(500_000)).boxed()
+                .collect(Collectors.toList());
+
+        // StreamsDemo section 4, at scale
+        StreamProfiler profiler = new StreamProfiler("section4", true);
+        List<Integer> processed = profiler.profile(mix.stream())
+                .stage("distinct()", Stream::distinct)
+                .stage("sorted()", Stream::sorted)
+                .stage("skip(1)", s -> s.skip(1))
+                .stage("limit(4)", s -> s.limit(4))
+                .stream()
+                .collect(Collectors.toList());
+        System.out.println("Processed List: " + processed);
+        profiler.report(System.out);
+
+        // A fraud-style pipeline with user functions, run in parallel
+        StreamProfiler fraud = new StreamProfiler("fraud", true);
+        long flagged = fraud.profile(mix.parallelStream())
+                .stage("filter(highValue)", s -> s.filter(amount -> amount > 400_000))
+                .stage("map(toCents)", s -> s.map(amount -> amount * 100L))
+                .stage("filter(roundAmount)", s -> s.filter(cents -> cents % 1_000 == 0))
+                .stream()
+                .count();
+        System.out.println("\nFlagged: " + flagged);
+        fraud.report(System.out);
+        System.out.println("\nExported: " + fraud.metrics().entrySet().stream().limit(4)
+                .map(Map.Entry::toString).collect(Collectors.joining(", ")) + ", ...");
+
+        // Size-preserving stages + count(): a SIZED source would skip the traversal entirely
+        StreamProfiler sized = new StreamProfiler("sized", true);
+        long counted = sized.profile(mix.stream())
+                .stage("map(toCents)", s -> s.map(amount -> amount * 100L))
+                .stream()
+                .count();
+        System.out.println("\nCounted: " + counted);
+        sized.report(System.out);
+
+        // Disabled: the same code path builds the plain stream
+        for (int run = 0; run < 3; run++) {
+            long t0 = System.nanoTime();
+            long plain = mix.stream().filter(a -> a > 400_000).map(a -> a * 100L).count();
+            long t1 = System.nanoTime();
+            StreamProfiler off = disabled("off");
+            long wrapped = off.profile(mix.stream())
+                    .stage("filter", s -> s.filter(a -> a > 400_000))
+                    .stage("map", s -> s.map(a -> a * 100L))
+                    .stream()
+                    .count();
+            long t2 = System.nanoTime();
+            System.out.printf("%nDisabled overhead run %d: plain %.1f ms vs wrapped %.1f ms (%d = %d)",
+                    run + 1, (t1 - t0) / 1e6, (t2 - t1) / 1e6, plain, wrapped);
+        }
+        System.out.println();
+    }
+}
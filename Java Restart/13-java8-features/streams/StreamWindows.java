@@ -0,0 +1,376 @@
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * WINDOWING & BATCHING STREAM OPERATORS
+ * -------------------------------------
+ * Stream has no "group the next N elements" or "per minute" stage: the options
+ * are one element at a time or collect() everything. These operators turn a
+ * Stream<T> into a lazy stream of windows:
+ *
+ * ✅ batches(n)                 – fixed-size chunks (last one may be short), e.g. batch inserts
+ * ✅ sliding(n, step)           – count windows of n elements every 'step' elements
+ * ✅ tumbling(time, width)      – back-to-back time windows [k*width, (k+1)*width)
+ * ✅ sliding(time, width, slide)– overlapping time windows ending every 'slide'
+ * ✅ sessions(time, gap)        – a window closes after 'gap' with no events
+ * ✅ sessionsBy(key, time, gap) – the same per key (e.g. per account)
+ *
+ * Every operator pulls from the source on demand and buffers at most one window
+ * (count windows: n elements; time windows: 'width' of events; keyed sessions: the
+ * open sessions). Windows are built sequentially, in order; downstream of the
+ * window stage a parallel stream processes whole windows concurrently (the
+ * spliterator hands out batches of finished windows when split).
+ *
+ * Time windows expect non-decreasing timestamps; a late element is placed in the
+ * window being filled, like StreamingFraudDetector treats late events.
+ */
+public final class StreamWindows {
+
+    private StreamWindows() { }
+
+    /** A closed window: [start, end) for time windows, first/last event time for sessions. */
+    public static final class Window<T> {
+        public final long start;
+        public final long end;
+        public final List<T> elements;
+
+        Window(long start, long end, List<T> elements) {
+            this.start = start;
+            this.end = end;
+            this.elements = elements;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + start + ", " + end + ") x" + elements.size();
+        }
+    }
+
+    /**
+     * Pull-based window builder: tryAdvance() feeds source elements into
+     * accept() until a window is ready in 'pending', then hands out one window.
+     * AbstractSpliterator supplies trySplit() (batches of windows) for parallel streams.
+     */
+    private abstract static class WindowSpliterator<T, W> extends Spliterators.AbstractSpliterator<W>
+            implements Consumer<T> {
+        private final Spliterator<T> source;
+        final ArrayDeque<W> pending = new ArrayDeque<>();
+        private boolean exhausted;
+
+        WindowSpliterator(Spliterator<T> source) {
+            super(Long.MAX_VALUE, ORDERED | NONNULL);
+            this.source = source;
+        }
+
+        /** Adds one element; may push finished windows to 'pending'. */
+        @Override
+        public abstract void accept(T element);
+
+        /** Source is exhausted: push whatever is still open. */
+        abstract void finish();
+
+        @Override
+        public boolean tryAdvance(Consumer<? super W> action) {
+            while (pending.isEmpty() && !exhausted) {
+                if (!source.tryAdvance(this)) {
+                    exhausted = true;
+                    finish();
+                }
+            }
+            W window = pending.poll();
+            if (window == null) {
+                return false;
+            }
+            action.accept(window);
+            return true;
+        }
+    }
+
+    private static <T, W> Stream<W> windowed(Stream<T> source, Function<Spliterator<T>, WindowSpliterator<T, W>> factory) {
+        boolean parallel = source.isParallel();     // before sequential() clears it on the shared pipeline
+        return StreamSupport.stream(factory.apply(source.sequential().spliterator()), parallel)
+                .onClose(source::close);
+    }
+
+    // ==========================================
+    // 1. COUNT WINDOWS
+    // ==========================================
+
+    public static <T> Stream<List<T>> batches(Stream<T> source, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + size);
+        }
+        return windowed(source, spliterator -> new WindowSpliterator<T, List<T>>(spliterator) {
+            private List<T> batch = new ArrayList<>(size);
+
+            @Override
+            public void accept(T element) {
+                batch.add(element);
+                if (batch.size() == size) {
+                    pending.add(batch);
+                    batch = new ArrayList<>(size);
+                }
+            }
+
+            @Override
+            void finish() {
+                if (!batch.isEmpty()) {
+                    pending.add(batch);
+                }
+            }
+        });
+    }
+
+    /** Windows of 'size' consecutive elements, one every 'step' elements; only full windows are emitted. */
+    public static <T> Stream<List<T>> sliding(Stream<T> source, int size, int step) {
+        if (size < 1 || step < 1) {
+            throw new IllegalArgumentException("Size and step must be positive: " + size + ", " + step);
+        }
+        return windowed(source, spliterator -> new WindowSpliterator<T, List<T>>(spliterator) {
+            private final ArrayDeque<T> buffer = new ArrayDeque<>(size);
+            private int skip;           // step > size: elements to drop before the next window starts
+
+            @Override
+            public void accept(T element) {
+                if (skip > 0) {
+                    skip--;
+                    return;
+                }
+                buffer.addLast(element);
+                if (buffer.size() == size) {
+                    pending.add(new ArrayList<>(buffer));
+                    for (int i = 0; i < step && !buffer.isEmpty(); i++) {
+                        buffer.removeFirst();
+                    }
+                    skip = Math.max(0, step - size);
+                }
+            }
+
+            @Override
+            void finish() { }
+        });
+    }
+
+    // ==========================================
+    // 2. TIME WINDOWS
+    // ==========================================
+
+    public static <T> Stream<Window<T>> tumbling(Stream<T> source, ToLongFunction<? super T> time, long width) {
+        return sliding(source, time, width, width);
+    }
+
+    /**
+     * Windows [end - width, end) for every end = k * slide; each element lands in
+     * width / slide windows. Windows with no elements are skipped.
+     */
+    public static <T> Stream<Window<T>> sliding(Stream<T> source, ToLongFunction<? super T> time, long width, long slide) {
+        if (width < 1 || slide < 1 || slide > width) {
+            throw new IllegalArgumentException("Need 0 < slide <= width: " + slide + ", " + width);
+        }
+        return windowed(source, spliterator -> new WindowSpliterator<T, Window<T>>(spliterator) {
+            private final ArrayDeque<T> buffer = new ArrayDeque<>();
+            private final ArrayDeque<Long> times = new ArrayDeque<>();
+            private long nextEnd = Long.MIN_VALUE;
+            private long newest = Long.MIN_VALUE;
+
+            @Override
+            public void accept(T element) {
+                long t = Math.max(time.applyAsLong(element), newest);
+                newest = t;
+                if (buffer.isEmpty()) {
+                    nextEnd = Math.floorDiv(t, slide) * slide + slide;     // first window that contains t
+                }
+                while (t >= nextEnd && !buffer.isEmpty()) {
+                    emitAndAdvance();
+                }
+                if (buffer.isEmpty()) {
+                    nextEnd = Math.floorDiv(t, slide) * slide + slide;     // skip the empty gap
+                }
+                buffer.addLast(element);
+                times.addLast(t);
+            }
+
+            private void emitAndAdvance() {
+                long start = nextEnd - width;
+                List<T> elements = new ArrayList<>(buffer.size());
+                Iterator<Long> ts = times.iterator();
+                for (T e : buffer) {
+                    if (ts.next() >= start) {
+                        elements.add(e);
+                    }
+                }
+                if (!elements.isEmpty()) {
+                    pending.add(new Window<>(start, nextEnd, elements));
+                }
+                nextEnd += slide;
+                while (!times.isEmpty() && times.peekFirst() < nextEnd - width) {
+                    times.removeFirst();
+                    buffer.removeFirst();
+                }
+            }
+
+            @Override
+            void finish() {
+                while (!buffer.isEmpty()) {
+                    emitAndAdvance();
+                }
+            }
+        });
+    }
+
+    // ==========================================
+    // 3. SESSION WINDOWS
+    // ==========================================
+
+    /** Consecutive elements closer than 'gap' in time form one session. */
+    public static <T> Stream<Window<T>> sessions(Stream<T> source, ToLongFunction<? super T> time, long gap) {
+        checkGap(gap);
+        return windowed(source, spliterator -> new WindowSpliterator<T, Window<T>>(spliterator) {
+            private List<T> current = new ArrayList<>();
+            private long first;
+            private long last = Long.MIN_VALUE;     // not 0: timestamps before the epoch are valid
+
+            @Override
+            public void accept(T element) {
+                long t = Math.max(time.applyAsLong(element), last);
+                if (!current.isEmpty() && t - last > gap) {
+                    pending.add(new Window<>(first, last, current));
+                    current = new ArrayList<>();
+                }
+                if (current.isEmpty()) {
+                    first = t;
+                }
+                current.add(element);
+                last = t;
+            }
+
+            @Override
+            void finish() {
+                if (!current.isEmpty()) {
+                    pending.add(new Window<>(first, last, current));
+                }
+            }
+        });
+    }
+
+    private static void checkGap(long gap) {
+        if (gap < 0) {
+            throw new IllegalArgumentException("Session gap must not be negative: " + gap);
+        }
+    }
+
+    /**
+     * Sessions per key. Open sessions are kept in order of last activity, so closing
+     * every session idle for longer than 'gap' only looks at the oldest ones.
+     */
+    public static <T, K> Stream<Map.Entry<K, Window<T>>> sessionsBy(Stream<T> source, Function<? super T, ? extends K> key,
+                                                                   ToLongFunction<? super T> time, long gap) {
+        checkGap(gap);
+        final class Open {
+            final List<T> elements = new ArrayList<>();
+            long first;
+            long last;
+        }
+        return windowed(source, spliterator -> new WindowSpliterator<T, Map.Entry<K, Window<T>>>(spliterator) {
+            private final LinkedHashMap<K, Open> open = new LinkedHashMap<>(16, 0.75f, true);
+            private long newest = Long.MIN_VALUE;
+
+            @Override
+            public void accept(T element) {
+                long t = Math.max(time.applyAsLong(element), newest);
+                newest = t;
+                Iterator<Map.Entry<K, Open>> oldest = open.entrySet().iterator();
+                while (oldest.hasNext()) {
+                    Map.Entry<K, Open> e = oldest.next();
+                    if (t - e.getValue().last <= gap) {
+                        break;
+                    }
+                    close(e.getKey(), e.getValue());
+                    oldest.remove();
+                }
+                Open session = open.computeIfAbsent(key.apply(element), k -> {
+                    Open o = new Open();
+                    o.first = t;
+                    return o;
+                });
+                session.elements.add(element);
+                session.last = t;
+            }
+
+            private void close(K k, Open session) {
+                pending.add(new AbstractMap.SimpleImmutableEntry<>(k, new Window<>(session.first, session.last, session.elements)));
+            }
+
+            @Override
+            void finish() {
+                open.forEach(this::close);
+                open.clear();
+            }
+        });
+    }
+
+    // ==========================================
+    // DEMO
+    // ==========================================
+
+    static final class Event {
+        final String account;
+        final long amount;
+        final long time;
+
+        Event(String account, long amount, long time) {
+            this.account = account;
+            this.amount = amount;
+            this.time = time;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.println("=== Windowing & Batching Stream Operators ===\n");
+
+        System.out.println("batches(3):   " + batches(IntStream.rangeClosed(1, 8).boxed(), 3).collect(Collectors.toList()));
+        System.out.println("sliding(3,1): " + sliding(IntStream.rangeClosed(1, 6).boxed(), 3, 1).collect(Collectors.toList()));
+        System.out.println("sliding(2,3): " + sliding(IntStream.rangeClosed(1, 8).boxed(), 2, 3).collect(Collectors.toList()));
+
+        // One event every 0-20 s over ~6 hours; ACC_2 goes quiet for a while in the middle
+        Random rnd = new Random(23);
+        List<Event> events = new ArrayList<>();
+        long t = 0;
+        for (int i = 0; i < 2_000; i++) {
+            t += rnd.nextInt(20_000);
+            String account = "ACC_" + rnd.nextInt(3);
+            if (!(account.equals("ACC_2") && t > 7_200_000 && t < 10_800_000)) {
+                events.add(new Event(account, 1 + rnd.nextInt(1_000), t));
+            }
+        }
+
+        long minute = 60_000;
+        System.out.println("\nTumbling 1h volume:");
+        tumbling(events.stream(), e -> e.time, 60 * minute).forEach(w -> System.out.printf("  %3d-%3d min  %,8d (%d events)%n",
+                w.start / minute, w.end / minute, w.elements.stream().mapToLong(e -> e.amount).sum(), w.elements.size()));
+
+        long busiest = sliding(events.stream(), e -> e.time, 15 * minute, minute)
+                .mapToLong(w -> w.elements.size()).max().orElse(0);
+        System.out.println("Busiest 15-min sliding window (1-min slide): " + busiest + " events");
+
+        System.out.println("\nACC_2 sessions (30 min gap):");
+        sessionsBy(events.stream(), e -> e.account, e -> e.time, 30 * minute)
+                .filter(s -> s.getKey().equals("ACC_2"))
+                .forEach(s -> System.out.printf("  %s %3d-%3d min, %d events%n", s.getKey(),
+                        s.getValue().start / minute, s.getValue().end / minute, s.getValue().elements.size()));
+
+        // Batch insert: windows are built in order, then processed in parallel
+        long inserted = batches(events.stream(), 250).parallel()
+                .mapToLong(batch -> batch.stream().mapToLong(e -> e.amount).sum())
+                .sum();
+        System.out.println("\nParallel batch sums match: " + (inserted == events.stream().mapToLong(e -> e.amount).sum()));
+        System.out.println("Lazy: first batch of an infinite stream = "
+                + batches(Stream.iterate(1, i -> i + 1), 4).findFirst().orElse(null));
+    }
+}
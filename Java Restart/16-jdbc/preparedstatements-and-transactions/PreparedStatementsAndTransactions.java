@@ -1,5 +1,6 @@
 // Demonstrates PreparedStatement and JDBC Transactions with banking example
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -25,8 +26,11 @@ import java.sql.SQLException;
  * CREATE TABLE bank_accounts (
  *   account_no INT PRIMARY KEY,
  *   customer_name VARCHAR(50),
- *   balance DOUBLE
+ *   balance DECIMAL(15, 2)
  * );
+ *
+ * Money is passed around as long paise/cents (fixed-point, no double rounding)
+ * and bound with setBigDecimal so the DECIMAL column stays exact.
  */
 
 public class PreparedStatementsAndTransactions {
@@ -41,7 +45,7 @@ public class PreparedStatementsAndTransactions {
         System.out.println("=== JDBC PreparedStatement & Transactions Demo ===\n");
 
         // Example: Transfer ₹2000 from Rahul to Amit
-        transferMoney(1001, 1002, 2000.00);
+        transferMoney(1001, 1002, 200_000L); // 2000.00
 
         System.out.println("\n----------------------------------------");
         System.out.println("* Key Takeaways *");
@@ -55,7 +59,9 @@ public class PreparedStatementsAndTransactions {
     /**
      * Transfers money between two accounts using JDBC transaction
      */
-    static void transferMoney(int fromAccount, int toAccount, double amount) {
+    static void transferMoney(int fromAccount, int toAccount, long amountPaise) {
+
+        BigDecimal amount = BigDecimal.valueOf(amountPaise, 2);
 
         String debitSQL =
                 "UPDATE bank_accounts SET balance = balance - ? WHERE account_no = ?";
@@ -75,7 +81,7 @@ public class PreparedStatementsAndTransactions {
 
             // Debit from sender
             try (PreparedStatement debitStmt = con.prepareStatement(debitSQL)) {
-                debitStmt.setDouble(1, amount);
+                debitStmt.setBigDecimal(1, amount);
                 debitStmt.setInt(2, fromAccount);
                 debitStmt.executeUpdate();
                 System.out.println("₹" + amount + " debited from account " + fromAccount);
@@ -83,7 +89,7 @@ public class PreparedStatementsAndTransactions {
 
             // Credit to receiver
             try (PreparedStatement creditStmt = con.prepareStatement(creditSQL)) {
-                creditStmt.setDouble(1, amount);
+                creditStmt.setBigDecimal(1, amount);
                 creditStmt.setInt(2, toAccount);
                 creditStmt.executeUpdate();
                 System.out.println("₹" + amount + " credited to account " + toAccount);